@@ -71,6 +71,8 @@ function generate() {
 				<configuration>
 					<includes>
 						<include>**/*Initializer.class</include>
+						<include>**/*Initializer\$*.class</include>
+						<include>META-INF/spring-init.index</include>
 					</includes>
 				</configuration>
 			</plugin>
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.core.io.support.SpringFactoriesLoader;
+import org.springframework.util.ClassUtils;
+
+/**
+ * The autoconfigurations listed in <code>spring.factories</code> for a class loader, and
+ * (once {@link #probe(boolean) probed}) the ones that are present with their
+ * initializers. Nothing here changes for a class loader, so one instance is shared by
+ * all the contexts that use it, and the import registrars use it instead of loading the
+ * same classes again.
+ *
+ * @author Dave Syer
+ *
+ */
+class AutoConfigurationCandidates {
+
+	private final ClassLoader classLoader;
+
+	private final Set<String> names;
+
+	private volatile Map<String, Candidate> types;
+
+	AutoConfigurationCandidates(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+		this.names = Collections.unmodifiableSet(
+				new HashSet<>(SpringFactoriesLoader.loadFactoryNames(EnableAutoConfiguration.class, classLoader)));
+	}
+
+	Set<String> getNames() {
+		return this.names;
+	}
+
+	/**
+	 * The autoconfiguration class with this name, if it was probed and found to be
+	 * present, otherwise null (and the caller has to find out for itself).
+	 */
+	Class<?> getType(String name) {
+		Candidate candidate = candidates().get(name);
+		return candidate == null ? null : candidate.type;
+	}
+
+	/**
+	 * The initializer for the autoconfiguration class with this name, if it was probed,
+	 * otherwise null.
+	 */
+	Class<? extends ApplicationContextInitializer<?>> getInitializerType(String name) {
+		Candidate candidate = candidates().get(name);
+		return candidate == null ? null : candidate.initializer;
+	}
+
+	void probe(boolean parallel) {
+		if (this.types != null) {
+			return;
+		}
+		InitializerIndex index = InitializerIndex.get(this.classLoader);
+		List<String> names = SpringFactoriesLoader.loadFactoryNames(EnableAutoConfiguration.class, this.classLoader);
+		Map<String, Candidate> result = (parallel ? names.parallelStream() : names.stream())
+				.map(name -> candidate(name, index)).filter(Objects::nonNull)
+				.collect(Collectors.toMap(candidate -> candidate.name, Function.identity(), (a, b) -> a));
+		// If two contexts get here at the same time the answer is the same anyway
+		this.types = Collections.unmodifiableMap(result);
+	}
+
+	private Map<String, Candidate> candidates() {
+		Map<String, Candidate> types = this.types;
+		return types != null ? types : Collections.emptyMap();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Candidate candidate(String name, InitializerIndex index) {
+		String initializer = index.getInitializerName(name);
+		if (initializer == null) {
+			return null;
+		}
+		Class<?> type = resolve(name);
+		Class<?> initializerType = type == null ? null : resolve(initializer);
+		if (initializerType == null) {
+			return null;
+		}
+		return new Candidate(name, type, (Class<? extends ApplicationContextInitializer<?>>) initializerType);
+	}
+
+	private Class<?> resolve(String name) {
+		try {
+			return ClassUtils.forName(name, this.classLoader);
+		}
+		catch (Throwable ex) {
+			// Same as ClassUtils.isPresent(): the class or one of its dependencies is missing
+			return null;
+		}
+	}
+
+	private static class Candidate {
+
+		private final String name;
+
+		private final Class<?> type;
+
+		private final Class<? extends ApplicationContextInitializer<?>> initializer;
+
+		Candidate(String name, Class<?> type, Class<? extends ApplicationContextInitializer<?>> initializer) {
+			this.name = name;
+			this.type = type;
+			this.initializer = initializer;
+		}
+
+	}
+
+}
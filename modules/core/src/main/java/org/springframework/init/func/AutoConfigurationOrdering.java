@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The rules that Spring Boot uses to sort auto-configurations: alphabetical, then
+ * <code>@AutoConfigureOrder</code>, then <code>@AutoConfigureBefore/After</code>, with
+ * the order and constraints supplied by a subclass. The annotation processor reads them
+ * from the compiler model and the {@link InitializerIndex} from the index, and they
+ * share this implementation, so it doesn't use any Spring types (Spring is not on the
+ * annotation processor path).
+ *
+ * @author Dave Syer
+ *
+ */
+public abstract class AutoConfigurationOrdering {
+
+	/**
+	 * The default order (same as <code>AutoConfigureOrder.DEFAULT_ORDER</code>).
+	 */
+	public static final int DEFAULT_ORDER = 0;
+
+	/**
+	 * The value of <code>@AutoConfigureOrder</code> for the type.
+	 */
+	public abstract int getOrder(String name);
+
+	/**
+	 * The (binary) names of the types that this one is applied before.
+	 */
+	public abstract Set<String> getBefore(String name);
+
+	/**
+	 * The (binary) names of the types that this one is applied after.
+	 */
+	public abstract Set<String> getAfter(String name);
+
+	/**
+	 * Sort the (binary) class names into the order they should be applied.
+	 * @throws IllegalStateException if there is a cycle in the before/after constraints
+	 */
+	public List<String> sort(Collection<String> names) {
+		List<String> sorted = new ArrayList<>(new TreeSet<>(names));
+		sorted.sort(Comparator.comparingInt(this::getOrder));
+		return sortByAnnotation(sorted);
+	}
+
+	private List<String> sortByAnnotation(List<String> names) {
+		List<String> toSort = new ArrayList<>(names);
+		Set<String> sorted = new LinkedHashSet<>();
+		Set<String> processing = new LinkedHashSet<>();
+		while (!toSort.isEmpty()) {
+			doSortByAfterAnnotation(names, toSort, sorted, processing, null);
+		}
+		sorted.retainAll(names);
+		return new ArrayList<>(sorted);
+	}
+
+	private void doSortByAfterAnnotation(List<String> names, List<String> toSort, Set<String> sorted,
+			Set<String> processing, String current) {
+		if (current == null) {
+			current = toSort.remove(0);
+		}
+		processing.add(current);
+		for (String after : getClassesRequestedAfter(names, current)) {
+			if (processing.contains(after)) {
+				throw new IllegalStateException("AutoConfigure cycle detected between " + current + " and " + after);
+			}
+			if (!sorted.contains(after) && toSort.contains(after)) {
+				toSort.remove(after);
+				doSortByAfterAnnotation(names, toSort, sorted, processing, after);
+			}
+		}
+		processing.remove(current);
+		sorted.add(current);
+	}
+
+	private Set<String> getClassesRequestedAfter(List<String> names, String name) {
+		Set<String> result = new LinkedHashSet<>(getAfter(name));
+		for (String other : names) {
+			if (getBefore(other).contains(name)) {
+				result.add(other);
+			}
+		}
+		return result;
+	}
+
+}
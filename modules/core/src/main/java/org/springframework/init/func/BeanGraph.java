@@ -0,0 +1,333 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.StringUtils;
+
+/**
+ * The beans registered by the generated initializers and their dependencies, as worked
+ * out by the annotation processor and written to
+ * <code>META-INF/spring-init/graph/&lt;initializer&gt;.properties</code>. Each file has
+ * an entry per bean (bean name to bean type) and the dependencies of the bean (keys of
+ * the form <code>name#dependencies</code>), if they are known. The qualifiers in the
+ * dependencies are percent-encoded, so they can contain the separators. Beans with conditions are
+ * included whether or not they were registered, so the graph is a superset of the
+ * beans in the context, and anything registered by other means (e.g. import
+ * registrars) is not in it.
+ *
+ * @author Dave Syer
+ *
+ */
+public class BeanGraph {
+
+	private static final Log logger = LogFactory.getLog(BeanGraph.class);
+
+	public static final String GRAPH_LOCATION = "META-INF/spring-init/graph/";
+
+	private static final Map<ClassLoader, BeanGraph> cache = new ConcurrentReferenceHashMap<>();
+
+	private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+	private BeanGraph(ClassLoader classLoader) {
+		for (String initializer : InitializerIndex.get(classLoader).getInitializerNames()) {
+			for (Node node : load(classLoader, initializer)) {
+				Node existing = this.nodes.get(node.getName());
+				if (existing != null && !existing.equals(node)) {
+					// Same name in two initializers: the one that wins depends on
+					// conditions and ordering, so we don't know the dependencies
+					node = new Node(node.getName(), Objects.equals(existing.getType(), node.getType()) ? node.getType() : null,
+							null);
+				}
+				this.nodes.put(node.getName(), node);
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Loaded " + this.nodes.size() + " beans from " + GRAPH_LOCATION);
+		}
+	}
+
+	/**
+	 * The graph for all the initializers in the {@link InitializerIndex}.
+	 */
+	public static BeanGraph get(ClassLoader classLoader) {
+		if (classLoader == null) {
+			classLoader = ClassUtils.getDefaultClassLoader();
+		}
+		return cache.computeIfAbsent(classLoader, BeanGraph::new);
+	}
+
+	/**
+	 * Load the beans registered by one initializer.
+	 * @param classLoader the class loader to find the graph with
+	 * @param initializer the name of the initializer class
+	 * @return the beans, or an empty list if the initializer has no graph (e.g. it was
+	 * generated by an older version of the processor)
+	 */
+	public static List<Node> load(ClassLoader classLoader, String initializer) {
+		String location = GRAPH_LOCATION + initializer + ".properties";
+		Properties properties = new Properties();
+		try {
+			Enumeration<URL> urls = classLoader.getResources(location);
+			while (urls.hasMoreElements()) {
+				properties.putAll(PropertiesLoaderUtils.loadProperties(new UrlResource(urls.nextElement())));
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalArgumentException("Unable to load bean graph from location [" + location + "]", e);
+		}
+		List<Node> nodes = new ArrayList<>();
+		for (String name : properties.stringPropertyNames()) {
+			if (name.endsWith("#dependencies")) {
+				continue;
+			}
+			String dependencies = properties.getProperty(name + "#dependencies");
+			nodes.add(new Node(name, properties.getProperty(name),
+					dependencies == null ? null : Dependency.parse(dependencies)));
+		}
+		return nodes;
+	}
+
+	/**
+	 * The bean with this name, or null if it is not in the graph.
+	 */
+	public Node getNode(String name) {
+		return this.nodes.get(name);
+	}
+
+	public Collection<Node> getNodes() {
+		return Collections.unmodifiableCollection(this.nodes.values());
+	}
+
+	/**
+	 * A bean in the graph.
+	 */
+	public static class Node {
+
+		private final String name;
+
+		private final String type;
+
+		private final List<Dependency> dependencies;
+
+		Node(String name, String type, List<Dependency> dependencies) {
+			this.name = name;
+			this.type = type;
+			this.dependencies = dependencies == null ? null : Collections.unmodifiableList(dependencies);
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * The (binary) name of the bean type, or null if it is not known.
+		 */
+		public String getType() {
+			return this.type;
+		}
+
+		/**
+		 * Whether the dependencies are known (they aren't for beans registered by name
+		 * with no constructor information, e.g. if the type is not public).
+		 */
+		public boolean isResolved() {
+			return this.dependencies != null;
+		}
+
+		/**
+		 * The dependencies of the bean, or null if they are not known.
+		 */
+		public List<Dependency> getDependencies() {
+			return this.dependencies;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Node other = (Node) obj;
+			return this.name.equals(other.name) && Objects.equals(this.type, other.type)
+					&& Objects.equals(this.dependencies, other.dependencies);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.name, this.type, this.dependencies);
+		}
+
+		@Override
+		public String toString() {
+			return this.name + "=" + this.type + (this.dependencies == null ? "" : this.dependencies);
+		}
+
+	}
+
+	/**
+	 * A dependency of a bean on the beans of a type.
+	 */
+	public static class Dependency {
+
+		private final Kind kind;
+
+		private final String type;
+
+		private final String qualifier;
+
+		Dependency(Kind kind, String type, String qualifier) {
+			this.kind = kind;
+			this.type = type;
+			this.qualifier = qualifier;
+		}
+
+		static List<Dependency> parse(String value) {
+			List<Dependency> dependencies = new ArrayList<>();
+			for (String item : StringUtils.commaDelimitedListToStringArray(value)) {
+				String[] parts = item.split(":", 3);
+				if (parts.length < 2) {
+					continue;
+				}
+				dependencies.add(new Dependency(Kind.valueOf(parts[0].toUpperCase()), parts[1],
+						parts.length > 2 ? unescape(parts[2]) : null));
+			}
+			return dependencies;
+		}
+
+		/**
+		 * Decode a qualifier (the processor percent-encodes the separators in it).
+		 */
+		private static String unescape(String value) {
+			if (value.indexOf('%') < 0) {
+				return value;
+			}
+			StringBuilder result = new StringBuilder(value.length());
+			for (int i = 0; i < value.length(); i++) {
+				char ch = value.charAt(i);
+				if (ch == '%' && i + 2 < value.length()) {
+					result.append((char) Integer.parseInt(value.substring(i + 1, i + 3), 16));
+					i += 2;
+				}
+				else {
+					result.append(ch);
+				}
+			}
+			return result.toString();
+		}
+
+		public Kind getKind() {
+			return this.kind;
+		}
+
+		/**
+		 * The (binary) name of the type of the bean (or elements of a collection).
+		 */
+		public String getType() {
+			return this.type;
+		}
+
+		/**
+		 * The qualifier of the bean, or null if there isn't one.
+		 */
+		public String getQualifier() {
+			return this.qualifier;
+		}
+
+		/**
+		 * Whether the target has to be created before the bean that depends on it (as
+		 * opposed to on demand, later, through a provider or a lazy proxy).
+		 */
+		public boolean isEager() {
+			return this.kind != Kind.PROVIDER && this.kind != Kind.LAZY;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Dependency other = (Dependency) obj;
+			return this.kind == other.kind && this.type.equals(other.type)
+					&& Objects.equals(this.qualifier, other.qualifier);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.kind, this.type, this.qualifier);
+		}
+
+		@Override
+		public String toString() {
+			return this.kind.name().toLowerCase() + ":" + this.type
+					+ (this.qualifier == null ? "" : ":" + this.qualifier);
+		}
+
+	}
+
+	public enum Kind {
+
+		/**
+		 * A single bean, injected directly.
+		 */
+		BEAN,
+
+		/**
+		 * An <code>ObjectProvider</code>, resolved on demand.
+		 */
+		PROVIDER,
+
+		/**
+		 * An <code>Optional</code>, resolved straight away (if there is a bean).
+		 */
+		OPTIONAL,
+
+		/**
+		 * A <code>@Lazy</code> proxy, resolved on first use.
+		 */
+		LAZY,
+
+		/**
+		 * All the beans of the type, as an array, a collection or a map.
+		 */
+		COLLECTION
+
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.BeanFactory;
+
+/**
+ * Lazy, cached reference to a singleton bean with a known name. Generated initializers
+ * use one for their configuration class, so that the bean suppliers for its
+ * <code>@Bean</code> methods resolve it by name once and then just read a field,
+ * instead of looking it up by type for every bean.
+ *
+ * @param <T> the type of the bean
+ * @author Dave Syer
+ *
+ */
+public class BeanHolder<T> implements Supplier<T> {
+
+	private final BeanFactory beanFactory;
+
+	private final String name;
+
+	private volatile T bean;
+
+	public BeanHolder(BeanFactory beanFactory, String name) {
+		this.beanFactory = beanFactory;
+		this.name = name;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get() {
+		T bean = this.bean;
+		if (bean == null) {
+			bean = (T) this.beanFactory.getBean(this.name);
+			this.bean = bean;
+		}
+		return bean;
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * Cache of class presence checks, shared by all the generated initializers that use the
+ * same class loader. The processor compiles <code>@ConditionalOnClass</code> and
+ * <code>@ConditionalOnMissingClass</code> into static flags that are computed from
+ * here, so each class name is only ever looked up once, however many initializers
+ * (and auto-configurations) are conditional on it.
+ *
+ * @author Dave Syer
+ *
+ */
+public abstract class ClassPresence {
+
+	private static final Map<ClassLoader, Map<String, Boolean>> cache = new ConcurrentReferenceHashMap<>();
+
+	/**
+	 * Whether the class is present in the default class loader.
+	 * @param name the name of the class
+	 */
+	public static boolean isPresent(String name) {
+		return isPresent(name, null);
+	}
+
+	/**
+	 * Whether the class is present in the class loader provided.
+	 * @param name the name of the class
+	 * @param classLoader the class loader to use (or null for the default)
+	 */
+	public static boolean isPresent(String name, ClassLoader classLoader) {
+		if (classLoader == null) {
+			classLoader = ClassUtils.getDefaultClassLoader();
+		}
+		ClassLoader loader = classLoader;
+		return cache.computeIfAbsent(loader, key -> new ConcurrentHashMap<>()).computeIfAbsent(name,
+				key -> ClassUtils.isPresent(key, loader));
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * Works out the class conditions that the processor compiled into the generated
+ * initializers before any of them is applied. They are static flags computed from
+ * {@link ClassPresence} when an initializer class is initialized, so initializing all
+ * the initializers in the {@link InitializerIndex} on a pool does the class loading for
+ * them concurrently. A class condition only depends on the class loader, so the flags
+ * are the same whichever thread computes them, and the initializers are still applied
+ * one at a time, in the usual order, on the main thread. Compiled property conditions
+ * are not included: they are only lookups in the <code>Environment</code> (no classes
+ * are loaded), so they are left where they are.
+ *
+ * @author Dave Syer
+ *
+ */
+class CompiledConditions {
+
+	private static final Log logger = LogFactory.getLog(CompiledConditions.class);
+
+	// Nothing changes for a class loader, so only the first context has to do any work
+	private static final Map<ClassLoader, Boolean> prepared = new ConcurrentReferenceHashMap<>();
+
+	/**
+	 * Initialize the generated initializers on a pool with this many threads (or fewer
+	 * if there are not that many initializers). The pool is shut down before this method
+	 * returns. With fewer than two threads there is no pool, and each initializer works
+	 * out its conditions on the main thread when it is first used, as usual.
+	 * @param classLoader the class loader for the initializers
+	 * @param threads the maximum number of threads to use
+	 */
+	static void prepare(ClassLoader classLoader, int threads) {
+		if (threads < 2 || prepared.putIfAbsent(classLoader, true) != null) {
+			return;
+		}
+		InitializerIndex index = InitializerIndex.get(classLoader);
+		List<Callable<Object>> tasks = new ArrayList<>();
+		for (String name : index.getInitializerNames()) {
+			String configuration = index.getConfigurationName(name);
+			tasks.add(Executors.callable(() -> initialize(name, configuration, classLoader)));
+		}
+		if (tasks.isEmpty()) {
+			return;
+		}
+		CustomizableThreadFactory factory = new CustomizableThreadFactory("functional-conditions-");
+		factory.setDaemon(true);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()), factory);
+		try {
+			executor.invokeAll(tasks);
+		}
+		catch (InterruptedException e) {
+			// Anything that wasn't done is done on the main thread when it is needed
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void initialize(String name, String configuration, ClassLoader classLoader) {
+		if (configuration != null && !ClassPresence.isPresent(configuration, classLoader)) {
+			// The initializer can't be used, so there's no point loading it
+			return;
+		}
+		try {
+			Class.forName(name, true, classLoader);
+		}
+		catch (Throwable ex) {
+			// It fails in the same way when it is used, but the first error is only here
+			if (logger.isDebugEnabled()) {
+				logger.debug("Cannot initialize " + name, ex);
+			}
+		}
+	}
+
+}
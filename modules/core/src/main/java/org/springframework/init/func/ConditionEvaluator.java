@@ -17,8 +17,13 @@
 package org.springframework.init.func;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
@@ -50,14 +55,47 @@ import org.springframework.util.MultiValueMap;
  */
 class ConditionEvaluator {
 
+	/**
+	 * Conditions that only depend on the classpath and the <code>Environment</code>, so
+	 * their outcomes do not change when more bean definitions are registered.
+	 */
+	private static final Set<String> STABLE_CONDITIONS = new HashSet<>(
+			Arrays.asList("org.springframework.boot.autoconfigure.condition.OnClassCondition",
+					"org.springframework.boot.autoconfigure.condition.OnPropertyCondition",
+					"org.springframework.boot.autoconfigure.condition.OnJavaCondition",
+					"org.springframework.boot.autoconfigure.condition.OnResourceCondition",
+					"org.springframework.boot.autoconfigure.condition.OnCloudPlatformCondition",
+					"org.springframework.context.annotation.ProfileCondition"));
+
 	private final ConditionContextImpl context;
 
+	private final boolean memoize;
+
+	private final Map<String, Condition> conditions = new ConcurrentHashMap<>();
+
+	private final Map<AnnotatedTypeMetadata, List<Condition>> conditionsByMetadata = new ConcurrentHashMap<>();
+
+	private final Map<AnnotatedTypeMetadata, Map<ConfigurationPhase, Boolean>> outcomes = new ConcurrentHashMap<>();
+
 	/**
 	 * Create a new {@link ConditionEvaluator} instance.
 	 */
 	public ConditionEvaluator(@Nullable BeanDefinitionRegistry registry,
 			@Nullable Environment environment, @Nullable ResourceLoader resourceLoader) {
+		this(registry, environment, resourceLoader, true);
+	}
+
+	/**
+	 * Create a new {@link ConditionEvaluator} instance.
+	 * @param memoize whether to remember outcomes that cannot change (i.e. only depend
+	 * on conditions that look at nothing but the classpath and the
+	 * <code>Environment</code>)
+	 */
+	public ConditionEvaluator(@Nullable BeanDefinitionRegistry registry,
+			@Nullable Environment environment, @Nullable ResourceLoader resourceLoader,
+			boolean memoize) {
 		this.context = new ConditionContextImpl(registry, environment, resourceLoader);
+		this.memoize = memoize;
 	}
 
 	/**
@@ -88,32 +126,63 @@ class ConditionEvaluator {
 			return shouldSkip(metadata, ConfigurationPhase.REGISTER_BEAN);
 		}
 
-		List<Condition> conditions = new ArrayList<>();
-		for (String[] conditionClasses : getConditionClasses(metadata)) {
-			for (String conditionClass : conditionClasses) {
-				Condition condition = getCondition(conditionClass,
-						this.context.getClassLoader());
-				conditions.add(condition);
-			}
+		Map<ConfigurationPhase, Boolean> outcomes = this.outcomes.get(metadata);
+		Boolean outcome = (outcomes != null ? outcomes.get(phase) : null);
+		if (outcome != null) {
+			return outcome;
 		}
 
-		AnnotationAwareOrderComparator.sort(conditions);
-
-		for (Condition condition : conditions) {
+		boolean memoize = this.memoize;
+		for (Condition condition : getConditions(metadata)) {
 			ConfigurationPhase requiredPhase = null;
 			if (condition instanceof ConfigurationCondition) {
 				requiredPhase = ((ConfigurationCondition) condition)
 						.getConfigurationPhase();
 			}
-			if ((requiredPhase == null || requiredPhase.compareTo(phase) <= 0)
-					&& !condition.matches(this.context, metadata)) {
+			if (requiredPhase != null && requiredPhase.compareTo(phase) > 0) {
+				continue;
+			}
+			boolean stable = isStable(condition);
+			if (!condition.matches(this.context, metadata)) {
+				// A condition that doesn't depend on the bean definitions won't change
+				if (this.memoize && stable) {
+					remember(metadata, phase, true);
+				}
 				return true;
 			}
+			memoize = memoize && stable;
 		}
 
+		if (memoize) {
+			remember(metadata, phase, false);
+		}
 		return false;
 	}
 
+	private boolean isStable(Condition condition) {
+		return STABLE_CONDITIONS.contains(condition.getClass().getName());
+	}
+
+	private void remember(AnnotatedTypeMetadata metadata, ConfigurationPhase phase,
+			boolean skip) {
+		this.outcomes.computeIfAbsent(metadata, key -> new ConcurrentHashMap<>()).put(phase,
+				skip);
+	}
+
+	private List<Condition> getConditions(AnnotatedTypeMetadata metadata) {
+		return this.conditionsByMetadata.computeIfAbsent(metadata, key -> {
+			List<Condition> conditions = new ArrayList<>();
+			for (String[] conditionClasses : getConditionClasses(key)) {
+				for (String conditionClass : conditionClasses) {
+					conditions.add(this.conditions.computeIfAbsent(conditionClass,
+							name -> getCondition(name, this.context.getClassLoader())));
+				}
+			}
+			AnnotationAwareOrderComparator.sort(conditions);
+			return conditions;
+		});
+	}
+
 	@SuppressWarnings("unchecked")
 	private List<String[]> getConditionClasses(AnnotatedTypeMetadata metadata) {
 		MultiValueMap<String, Object> attributes = metadata
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.MethodMetadata;
+
+/**
+ * Implemented by generated initializers whose configuration class (or its bean methods)
+ * have conditions that are evaluated at runtime. The metadata was worked out by the
+ * processor (see {@link GeneratedMetadata}), so the {@link ConditionService} does not
+ * need to read the class file.
+ *
+ * @author Dave Syer
+ *
+ */
+public interface ConditionMetadataSource {
+
+	/**
+	 * Metadata for the conditions on the configuration class.
+	 * @return the metadata, or null if the processor didn't generate any
+	 */
+	AnnotationMetadata getTypeMetadata();
+
+	/**
+	 * Metadata for the conditions on the bean method that returns this type.
+	 * @param type the bean type
+	 * @return the metadata, or null if the processor didn't generate any
+	 */
+	MethodMetadata getBeanMetadata(Class<?> type);
+
+}
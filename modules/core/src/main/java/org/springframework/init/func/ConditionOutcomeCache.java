@@ -0,0 +1,584 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport.ConditionAndOutcome;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport.ConditionAndOutcomes;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.context.annotation.Condition;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Condition outcomes saved to a local file, so that an application that restarts with
+ * the same classpath and configuration does not have to evaluate its conditions again.
+ * Switched on by setting <code>spring.functional.condition-cache</code> to the location
+ * of the file.
+ * <p>
+ * The whole file is keyed by a hash of the classpath, the JVM version and the active
+ * profiles, and if that doesn't match it is ignored. Jars are hashed by name, size and
+ * timestamp, and directories by the paths, sizes and timestamps of all the files in them
+ * (at any depth), so that a change in any package is noticed without reading the files.
+ * The file also records the environment properties that were read while conditions were
+ * evaluated (only hashes of the values are saved), and a change to any of those
+ * invalidates the whole file, because outcomes can depend on each other (e.g. through
+ * the beans that were registered). Properties are tracked through an extra
+ * {@link PropertySource} at the front of the environment, which is only there while a
+ * condition is being evaluated, so conditions that look at the property sources
+ * directly, or at anything other than the classpath, the environment and the bean
+ * definitions, are not safe to cache. What the conditions recorded in the
+ * <code>ConditionEvaluationReport</code> is saved with the outcomes and recorded again
+ * when they are used, so the report is the same either way.
+ *
+ * @author Dave Syer
+ *
+ */
+public class ConditionOutcomeCache {
+
+	public static final String CACHE_LOCATION_PROPERTY = "spring.functional.condition-cache";
+
+	private static final Log logger = LogFactory.getLog(ConditionOutcomeCache.class);
+
+	private static final int MAGIC = 0x53494343;
+
+	private static final int VERSION = 3;
+
+	private static final String REPORT_CLASS = "org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport";
+
+	private final Path file;
+
+	private final ConfigurableEnvironment environment;
+
+	private final long key;
+
+	private final Map<String, Outcome> saved = new HashMap<>();
+
+	private final Map<String, Outcome> outcomes = new ConcurrentHashMap<>();
+
+	// Property names to hashes of their values, for all the conditions
+	private final Map<String, Long> properties = new ConcurrentHashMap<>();
+
+	private final Map<String, Long> loaded = new HashMap<>();
+
+	private final ReadTracker tracker = new ReadTracker();
+
+	// Number of conditions being evaluated (on any thread) while the tracker is attached
+	private int tracking;
+
+	private final Report report;
+
+	private ConditionOutcomeCache(Path file, ConfigurableEnvironment environment, ClassLoader classLoader,
+			ConfigurableListableBeanFactory beanFactory) {
+		this.file = file;
+		this.environment = environment;
+		this.key = (hash(classpath(classLoader, file)) * 31 + hash(Arrays.asList(environment.getActiveProfiles())))
+				* 31 + hash(Arrays.asList(System.getProperty("java.version"), System.getProperty("java.vendor")));
+		this.report = beanFactory != null && ClassUtils.isPresent(REPORT_CLASS, classLoader)
+				? new Report(beanFactory, classLoader) : null;
+		load();
+	}
+
+	/**
+	 * A cache for the environment, or null if there isn't one configured.
+	 * @param environment the environment
+	 * @param classLoader the class loader for the application
+	 * @param beanFactory the bean factory that holds the condition evaluation report (if
+	 * there is one)
+	 */
+	public static ConditionOutcomeCache get(ConfigurableEnvironment environment, ClassLoader classLoader,
+			ConfigurableListableBeanFactory beanFactory) {
+		String location = environment.getProperty(CACHE_LOCATION_PROPERTY);
+		if (!StringUtils.hasText(location)) {
+			return null;
+		}
+		return new ConditionOutcomeCache(Paths.get(location), environment, classLoader, beanFactory);
+	}
+
+	/**
+	 * The outcome of a condition, from the file if it was saved there and nothing it
+	 * depends on has changed, or else from evaluating the condition.
+	 * @param name a unique name for the condition
+	 * @param sources the sources (class names, or class and method names separated by
+	 * <code>#</code>) in the condition evaluation report that belong to the condition
+	 * @param condition the condition to evaluate if the outcome is not known
+	 * @return the outcome of the condition
+	 */
+	public boolean matches(String name, Predicate<String> sources, BooleanSupplier condition) {
+		Outcome outcome = this.outcomes.get(name);
+		if (outcome != null) {
+			return outcome.matches;
+		}
+		outcome = this.saved.get(name);
+		if (outcome != null) {
+			if (this.outcomes.putIfAbsent(name, outcome) == null && this.report != null) {
+				this.report.record(outcome.report);
+			}
+			return outcome.matches;
+		}
+		Set<String> previous = this.tracker.start();
+		Set<String> names;
+		boolean matches;
+		attach();
+		try {
+			matches = condition.getAsBoolean();
+		}
+		finally {
+			detach();
+			names = this.tracker.stop(previous);
+		}
+		for (String property : names) {
+			this.properties.computeIfAbsent(property, key -> hash(this.environment.getProperty(key)));
+		}
+		List<Recorded> recorded = this.report != null ? this.report.find(sources) : Collections.emptyList();
+		this.outcomes.put(name, new Outcome(matches, recorded));
+		return matches;
+	}
+
+	private synchronized void attach() {
+		if (this.tracking++ == 0) {
+			this.environment.getPropertySources().addFirst(this.tracker);
+		}
+	}
+
+	private synchronized void detach() {
+		if (--this.tracking == 0) {
+			this.environment.getPropertySources().remove(this.tracker.getName());
+		}
+	}
+
+	/**
+	 * Write the outcomes to the file (replacing it).
+	 */
+	public void save() {
+		if (this.outcomes.equals(this.saved) && this.properties.equals(this.loaded)) {
+			return;
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeLong(this.key);
+			output.writeInt(this.properties.size());
+			for (Map.Entry<String, Long> property : this.properties.entrySet()) {
+				writeString(output, property.getKey());
+				output.writeLong(property.getValue());
+			}
+			output.writeInt(this.outcomes.size());
+			for (Map.Entry<String, Outcome> entry : this.outcomes.entrySet()) {
+				writeString(output, entry.getKey());
+				output.writeBoolean(entry.getValue().matches);
+				output.writeInt(entry.getValue().report.size());
+				for (Recorded recorded : entry.getValue().report) {
+					writeString(output, recorded.source);
+					writeString(output, recorded.condition);
+					output.writeBoolean(recorded.matches);
+					writeString(output, recorded.message);
+				}
+			}
+			output.flush();
+			Path parent = this.file.toAbsolutePath().getParent();
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			Path temp = Files.createTempFile(parent, this.file.getFileName().toString(), ".tmp");
+			Files.write(temp, bytes.toByteArray());
+			try {
+				Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Saved " + this.outcomes.size() + " condition outcomes to " + this.file);
+			}
+		}
+		catch (IOException e) {
+			logger.warn("Could not save condition outcomes to " + this.file + ": " + e);
+		}
+	}
+
+	private void load() {
+		if (!Files.isRegularFile(this.file)) {
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != this.key) {
+				logger.info("Ignoring condition outcomes from " + this.file + " (classpath, JVM or profiles changed)");
+				return;
+			}
+			Map<String, Long> properties = new HashMap<>();
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				String name = readString(buffer);
+				long hash = buffer.getLong();
+				if (hash(this.environment.getProperty(name)) != hash) {
+					logger.info("Ignoring condition outcomes from " + this.file + " (" + name + " changed)");
+					return;
+				}
+				properties.put(name, hash);
+			}
+			Map<String, Outcome> outcomes = new HashMap<>();
+			count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				String name = readString(buffer);
+				boolean matches = buffer.get() != 0;
+				List<Recorded> report = new ArrayList<>();
+				for (int j = buffer.getInt(); j > 0; j--) {
+					report.add(new Recorded(readString(buffer), readString(buffer), buffer.get() != 0,
+							readString(buffer)));
+				}
+				outcomes.put(name, new Outcome(matches, report));
+			}
+			this.loaded.putAll(properties);
+			this.properties.putAll(properties);
+			this.saved.putAll(outcomes);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Loaded " + outcomes.size() + " condition outcomes from " + this.file);
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			// Corrupt or truncated: it will be replaced when the outcomes are saved
+			logger.info("Ignoring condition outcomes from " + this.file + ": " + e);
+		}
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		if (value == null) {
+			output.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static List<String> classpath(ClassLoader classLoader, Path cache) {
+		List<String> entries = new ArrayList<>();
+		for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+			if (loader instanceof URLClassLoader) {
+				for (URL url : ((URLClassLoader) loader).getURLs()) {
+					entries.add(url.toString());
+					addFile(entries, url.toString(), cache);
+				}
+			}
+		}
+		for (String path : StringUtils.tokenizeToStringArray(System.getProperty("java.class.path", ""),
+				File.pathSeparator)) {
+			entries.add(path);
+			addFile(entries, path, cache);
+		}
+		return entries;
+	}
+
+	private static void addFile(List<String> entries, String location, Path cache) {
+		// Nested jars have the same timestamp as the archive that contains them
+		if (location.startsWith("jar:")) {
+			location = location.substring("jar:".length());
+		}
+		if (location.contains("!/")) {
+			location = location.substring(0, location.indexOf("!/"));
+		}
+		if (location.startsWith("file:")) {
+			location = location.substring("file:".length());
+		}
+		File file = new File(location);
+		if (file.isFile()) {
+			entries.add(file.length() + ":" + file.lastModified());
+		}
+		else if (file.isDirectory()) {
+			entries.add(String.valueOf(directory(file.toPath(), cache.toAbsolutePath().normalize())));
+		}
+	}
+
+	/**
+	 * Hash of the paths, sizes and timestamps of all the files in the directory. The
+	 * order that they are visited in doesn't matter, and the cache file itself is left
+	 * out in case it is in the directory.
+	 */
+	private static long directory(Path root, Path cache) {
+		long[] hash = new long[1];
+		try {
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+					if (attributes.isRegularFile() && !file.toAbsolutePath().normalize().equals(cache)) {
+						hash[0] += hash(root.relativize(file) + ":" + attributes.size() + ":"
+								+ attributes.lastModifiedTime().toMillis());
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		catch (IOException e) {
+			// Never the same twice, so nothing is cached
+			return System.nanoTime();
+		}
+		return hash[0];
+	}
+
+	private static long hash(Iterable<String> values) {
+		long hash = 0;
+		for (String value : values) {
+			hash = hash * 31 + hash(value);
+		}
+		return hash;
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the value (String.hashCode() is a bit too weak for a key
+	 * that is supposed to detect changes).
+	 */
+	private static long hash(String value) {
+		if (value == null) {
+			return 0;
+		}
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * The outcome of a condition and what was recorded in the condition evaluation
+	 * report while it was evaluated.
+	 */
+	private static class Outcome {
+
+		private final boolean matches;
+
+		private final List<Recorded> report;
+
+		Outcome(boolean matches, List<Recorded> report) {
+			this.matches = matches;
+			this.report = report;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Outcome)) {
+				return false;
+			}
+			Outcome other = (Outcome) obj;
+			return this.matches == other.matches && this.report.equals(other.report);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.matches, this.report);
+		}
+
+	}
+
+	/**
+	 * One condition outcome from the condition evaluation report.
+	 */
+	private static class Recorded {
+
+		private final String source;
+
+		private final String condition;
+
+		private final boolean matches;
+
+		private final String message;
+
+		Recorded(String source, String condition, boolean matches, String message) {
+			this.source = source;
+			this.condition = condition;
+			this.matches = matches;
+			this.message = message;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Recorded)) {
+				return false;
+			}
+			Recorded other = (Recorded) obj;
+			return this.source.equals(other.source) && this.condition.equals(other.condition)
+					&& this.matches == other.matches && Objects.equals(this.message, other.message);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.source, this.condition, this.matches, this.message);
+		}
+
+	}
+
+	/**
+	 * Access to the condition evaluation report (only used if Spring Boot
+	 * autoconfiguration is on the classpath).
+	 */
+	private static class Report {
+
+		private final ConfigurableListableBeanFactory beanFactory;
+
+		private final ClassLoader classLoader;
+
+		private final Map<String, Optional<Condition>> conditions = new ConcurrentHashMap<>();
+
+		Report(ConfigurableListableBeanFactory beanFactory, ClassLoader classLoader) {
+			this.beanFactory = beanFactory;
+			this.classLoader = classLoader;
+		}
+
+		/**
+		 * What the report has for the sources (nothing if there is no report).
+		 */
+		List<Recorded> find(Predicate<String> sources) {
+			ConditionEvaluationReport report = ConditionEvaluationReport.find(this.beanFactory);
+			if (report == null) {
+				return Collections.emptyList();
+			}
+			List<Recorded> result = new ArrayList<>();
+			for (Map.Entry<String, ConditionAndOutcomes> entry : report.getConditionAndOutcomesBySource()
+					.entrySet()) {
+				if (sources.test(entry.getKey())) {
+					for (ConditionAndOutcome outcome : entry.getValue()) {
+						result.add(new Recorded(entry.getKey(), outcome.getCondition().getClass().getName(),
+								outcome.getOutcome().isMatch(), outcome.getOutcome().getMessage()));
+					}
+				}
+			}
+			return result;
+		}
+
+		void record(List<Recorded> recorded) {
+			if (recorded.isEmpty()) {
+				return;
+			}
+			ConditionEvaluationReport report = ConditionEvaluationReport.get(this.beanFactory);
+			for (Recorded outcome : recorded) {
+				// The report only uses the condition for its type
+				Condition condition = this.conditions.computeIfAbsent(outcome.condition, this::condition)
+						.orElse(null);
+				if (condition != null) {
+					report.recordConditionEvaluation(outcome.source, condition,
+							new ConditionOutcome(outcome.matches, outcome.message));
+				}
+			}
+		}
+
+		private Optional<Condition> condition(String type) {
+			try {
+				return Optional.of((Condition) BeanUtils.instantiateClass(ClassUtils.forName(type, this.classLoader)));
+			}
+			catch (Throwable e) {
+				return Optional.empty();
+			}
+		}
+
+	}
+
+	/**
+	 * Property source that never has any properties, but records the names that are
+	 * asked for while a condition is being evaluated on the current thread.
+	 */
+	private static class ReadTracker extends PropertySource<Object> {
+
+		private final ThreadLocal<Set<String>> names = new ThreadLocal<>();
+
+		ReadTracker() {
+			super(ConditionOutcomeCache.class.getName(), new Object());
+		}
+
+		Set<String> start() {
+			Set<String> previous = this.names.get();
+			this.names.set(new TreeSet<>());
+			return previous;
+		}
+
+		Set<String> stop(Set<String> previous) {
+			Set<String> names = this.names.get();
+			if (previous != null) {
+				// Nested evaluation: the outer condition depends on the same properties
+				previous.addAll(names);
+				this.names.set(previous);
+			}
+			else {
+				this.names.remove();
+			}
+			return names;
+		}
+
+		@Override
+		public Object getProperty(String name) {
+			Set<String> names = this.names.get();
+			if (names != null) {
+				names.add(name);
+			}
+			return null;
+		}
+
+	}
+
+}
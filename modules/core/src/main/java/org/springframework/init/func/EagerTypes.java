@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bean types that are not lazy even if lazy initialization is switched on, because they
+ * have to exist (or be called back) when the context starts. The annotation processor
+ * marks bean definitions of these types as not lazy in the generated initializers, and
+ * the {@link LazyInitializationPostProcessor} does the same at runtime for the ones that
+ * don't say. The types are listed by name, so this class doesn't use any Spring types
+ * (Spring is not on the annotation processor path).
+ *
+ * @author Dave Syer
+ *
+ */
+public abstract class EagerTypes {
+
+	/**
+	 * The fully qualified names of the eager types.
+	 */
+	public static final List<String> NAMES = Collections.unmodifiableList(Arrays.asList(
+			"org.springframework.context.SmartLifecycle", "org.springframework.beans.factory.SmartInitializingSingleton",
+			"org.springframework.context.ApplicationListener", "org.springframework.boot.web.server.WebServerFactory",
+			"org.springframework.scheduling.TaskScheduler", "java.util.concurrent.ScheduledExecutorService",
+			"org.springframework.aop.framework.AopInfrastructureBean"));
+
+	private EagerTypes() {
+	}
+
+}
@@ -17,14 +17,24 @@
 package org.springframework.init.func;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanDefinition;
@@ -32,7 +42,6 @@ import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
 import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
-import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
 import org.springframework.boot.autoconfigure.AutoConfigurations;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.context.ApplicationContext;
@@ -56,9 +65,13 @@ import org.springframework.util.ClassUtils;
  */
 public class FunctionalInstallerImportRegistrars implements BeanDefinitionRegistryPostProcessor, ImportRegistrars {
 
+	private static final Log logger = LogFactory.getLog(FunctionalInstallerImportRegistrars.class);
+
 	private Set<Imported> registrars = new LinkedHashSet<>();
 
-	private Set<Imported> deferred = new LinkedHashSet<>();
+	private Deque<Imported> queue = new ArrayDeque<>();
+
+	private Deque<Imported> deferred = new ArrayDeque<>();
 
 	private enum Phase {
 
@@ -68,10 +81,21 @@ public class FunctionalInstallerImportRegistrars implements BeanDefinitionRegist
 
 	private Phase phase = Phase.USER;
 
+	private Map<Phase, Integer> processed = new EnumMap<>(Phase.class);
+
+	private Map<Class<?>, AnnotationMetadata> metadata;
+
 	private GenericApplicationContext context;
 
+	private AutoConfigurationCandidates candidates;
+
 	public FunctionalInstallerImportRegistrars(GenericApplicationContext context) {
+		this(context, null);
+	}
+
+	FunctionalInstallerImportRegistrars(GenericApplicationContext context, AutoConfigurationCandidates candidates) {
 		this.context = context;
+		this.candidates = candidates;
 	}
 
 	@Override
@@ -80,20 +104,26 @@ public class FunctionalInstallerImportRegistrars implements BeanDefinitionRegist
 
 	@Override
 	public void add(Class<?> importer, Class<?> imported) {
-		this.registrars.add(new Imported(importer, imported));
+		enqueue(new Imported(importer, imported));
 	}
 
 	@Override
 	public void add(Class<?> importer, String typeName) {
 		if (typeName.endsWith(".xml")) {
-			this.registrars.add(new Imported(importer, typeName, context));
+			enqueue(new Imported(importer, typeName, context));
 		}
 		else {
 			if (isAutoConfiguration(importer, typeName) && !context.getEnvironment()
 					.getProperty(EnableAutoConfiguration.ENABLED_OVERRIDE_PROPERTY, Boolean.class, true)) {
 				return;
 			}
-			this.registrars.add(new Imported(importer, typeName, context.getClassLoader()));
+			enqueue(new Imported(importer, typeName, context.getClassLoader()));
+		}
+	}
+
+	private void enqueue(Imported imported) {
+		if (this.registrars.add(imported)) {
+			this.queue.add(imported);
 		}
 	}
 
@@ -102,50 +132,60 @@ public class FunctionalInstallerImportRegistrars implements BeanDefinitionRegist
 		return typeName.endsWith("AutoConfigurationImportSelector");
 	}
 
+	/**
+	 * Process the imports in rounds until there are none left: each round takes all the
+	 * imports that are queued, and then applies the initializers for the configuration
+	 * classes they selected (which might queue more imports). Each import is processed
+	 * exactly once. Deferred import selectors are queued separately and processed when
+	 * everything else has been.
+	 */
 	@Override
 	public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) throws BeansException {
-		Set<Imported> seen = new LinkedHashSet<>();
-		Set<Imported> added = findAdded(seen, registry);
-		while (!added.isEmpty()) {
-			for (Imported imported : added) {
-				if (!registrars.contains(imported)) {
-					Class<?> type = imported.getType();
-					if (type != null && ImportBeanDefinitionRegistrar.class.isAssignableFrom(type)) {
-						importRegistrar(registry, imported);
-					}
-				}
+		ConditionService conditions = context.getBean(ConditionService.class);
+		InitializerIndex index = InitializerIndex.get(context.getClassLoader());
+		// The same importer often has several selectors and registrars
+		this.metadata = new HashMap<>();
+		int rounds;
+		try {
+			rounds = process(registry, conditions, index);
+			if (!this.deferred.isEmpty()) {
+				this.phase = Phase.DEFERRED;
+				this.queue.addAll(this.deferred);
+				this.deferred.clear();
+				rounds += process(registry, conditions, index);
 			}
-			added = findAdded(seen, registry);
 		}
-		if (!deferred.isEmpty()) {
-			phase = Phase.DEFERRED;
-			seen.removeAll(deferred);
-			added = findAdded(seen, registry);
-			while (!added.isEmpty()) {
-				for (Imported imported : added) {
-					if (!registrars.contains(imported)) {
-						Class<?> type = imported.getType();
-						if (type != null && ImportBeanDefinitionRegistrar.class.isAssignableFrom(type)) {
-							importRegistrar(registry, imported);
-						}
-					}
+		finally {
+			this.metadata = null;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Processed imports in " + rounds + " rounds: " + this.processed);
+		}
+	}
+
+	private int process(BeanDefinitionRegistry registry, ConditionService conditions, InitializerIndex index) {
+		int rounds = 0;
+		while (!this.queue.isEmpty()) {
+			List<Imported> round = new ArrayList<>(this.queue);
+			this.queue.clear();
+			rounds++;
+			for (Imported imported : process(round, registry, conditions, index)) {
+				// Registrars selected by an ImportSelector
+				if (this.registrars.add(imported)) {
+					this.processed.merge(this.phase, 1, Integer::sum);
+					importRegistrar(registry, imported);
 				}
-				added = findAdded(seen, registry);
 			}
 		}
+		return rounds;
 	}
 
-	private Set<Imported> findAdded(Set<Imported> seen, BeanDefinitionRegistry registry) {
+	private Set<Imported> process(List<Imported> round, BeanDefinitionRegistry registry,
+			ConditionService conditions, InitializerIndex index) {
 		Set<Imported> added = new LinkedHashSet<>();
-		Set<Imported> start = prioritize(registrars);
 		Map<Class<?>, ApplicationContextInitializer<GenericApplicationContext>> configs = new LinkedHashMap<>();
 		Set<ApplicationContextInitializer<GenericApplicationContext>> initializers = new LinkedHashSet<>();
-		ConditionService conditions = context.getBean(ConditionService.class);
-		for (Imported imported : registrars) {
-			if (seen.contains(imported)) {
-				continue;
-			}
-			seen.add(imported);
+		for (Imported imported : round) {
 			Class<?> type = imported.getType();
 			if (type != null) {
 				if (DeferredImportSelector.class.isAssignableFrom(type)) {
@@ -154,23 +194,20 @@ public class FunctionalInstallerImportRegistrars implements BeanDefinitionRegist
 						continue;
 					}
 				}
+				this.processed.merge(this.phase, 1, Integer::sum);
 				if (ImportSelector.class.isAssignableFrom(type)) {
 					ImportSelector registrar = (ImportSelector) context.getAutowireCapableBeanFactory()
 							.createBean(type);
 					String[] selected = selected(registrar, imported.getSource());
 					for (String select : selected) {
-						if (ClassUtils.isPresent(select, context.getClassLoader())) {
-							Class<?> clazz = ClassUtils.resolveClassName(select, context.getClassLoader());
+						Class<?> clazz = resolve(select);
+						if (clazz != null) {
 							if (conditions.matches(clazz, ConfigurationPhase.PARSE_CONFIGURATION)) {
 								if (AnnotatedElementUtils.isAnnotated(clazz, Configuration.class)) {
 									// recurse?
-									if (ClassUtils.isPresent(select + "Initializer", context.getClassLoader())) {
-										@SuppressWarnings("unchecked")
-										ApplicationContextInitializer<GenericApplicationContext> initializer = BeanUtils
-												.instantiateClass(
-														ClassUtils.resolveClassName(select + "Initializer",
-																context.getClassLoader()),
-														ApplicationContextInitializer.class);
+									ApplicationContextInitializer<GenericApplicationContext> initializer = getInitializer(
+											index, select);
+									if (initializer != null) {
 										configs.put(clazz, initializer);
 									}
 								}
@@ -191,11 +228,9 @@ public class FunctionalInstallerImportRegistrars implements BeanDefinitionRegist
 					try {
 						if (type.getAnnotation(Configuration.class) != null) {
 							// recurse?
-							if (ClassUtils.isPresent(type.getName() + "Initializer", context.getClassLoader())) {
-								@SuppressWarnings("unchecked")
-								ApplicationContextInitializer<GenericApplicationContext> initializer = BeanUtils
-										.instantiateClass(ClassUtils.resolveClassName(type.getName() + "Initializer",
-												context.getClassLoader()), ApplicationContextInitializer.class);
+							ApplicationContextInitializer<GenericApplicationContext> initializer = getInitializer(
+									index, type.getName());
+							if (initializer != null) {
 								configs.put(type, initializer);
 							}
 						}
@@ -209,6 +244,7 @@ public class FunctionalInstallerImportRegistrars implements BeanDefinitionRegist
 				}
 			}
 			else if (imported.getResources() != null) {
+				this.processed.merge(this.phase, 1, Integer::sum);
 				initializers.add(new XmlInitializer(imported.getResources()));
 			}
 		}
@@ -216,30 +252,67 @@ public class FunctionalInstallerImportRegistrars implements BeanDefinitionRegist
 			initializers.addAll(configs.values());
 		}
 		else {
-			for (Class<?> config : AutoConfigurations
-					.getClasses(AutoConfigurations.of(configs.keySet().toArray(new Class<?>[0])))) {
+			for (Class<?> config : sort(index, configs.keySet())) {
 				initializers.add(configs.get(config));
 			}
 		}
 		for (ApplicationContextInitializer<GenericApplicationContext> initializer : initializers) {
 			initializer.initialize(context);
 		}
-		for (Imported imported : registrars) {
-			if (!start.contains(imported)) {
-				added.add(imported);
-			}
-		}
 		return added;
 	}
 
+	private Class<?> resolve(String name) {
+		// Autoconfigurations have usually been loaded already by the listener
+		Class<?> type = this.candidates != null ? this.candidates.getType(name) : null;
+		if (type != null) {
+			return type;
+		}
+		ClassLoader classLoader = this.context.getClassLoader();
+		return ClassUtils.isPresent(name, classLoader) ? ClassUtils.resolveClassName(name, classLoader) : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private ApplicationContextInitializer<GenericApplicationContext> getInitializer(InitializerIndex index,
+			String name) {
+		Class<? extends ApplicationContextInitializer<?>> type = this.candidates != null
+				? this.candidates.getInitializerType(name) : null;
+		if (type == null) {
+			return index.getInitializer(name);
+		}
+		return BeanUtils.instantiateClass(type, ApplicationContextInitializer.class);
+	}
+
+	private Collection<Class<?>> sort(InitializerIndex index, Collection<Class<?>> configs) {
+		List<String> sorted = index.sort(configs.stream().map(Class::getName).collect(Collectors.toList()));
+		if (sorted == null) {
+			// Not all in the index so we need to read the class metadata
+			return Arrays.asList(AutoConfigurations.getClasses(AutoConfigurations.of(configs.toArray(new Class<?>[0]))));
+		}
+		return sorted.stream().map(name -> ClassUtils.resolveClassName(name, context.getClassLoader()))
+				.collect(Collectors.toList());
+	}
+
 	private String[] selected(ImportSelector registrar, Class<?> importer) {
 		if (registrar instanceof DeferredImportSelector) {
+			String[] selected = registrar.selectImports(getMetadata(importer));
+			List<String> sorted = InitializerIndex.get(context.getClassLoader()).sort(Arrays.asList(selected));
+			if (sorted != null) {
+				return sorted.toArray(new String[0]);
+			}
 			return new DeferredConfigurations(
-					Stream.of(registrar.selectImports(AnnotationMetadata.introspect(importer)))
+					Stream.of(selected)
 							.map(name -> ClassUtils.resolveClassName(name, context.getClassLoader()))
 							.collect(Collectors.toList())).list();
 		}
-		return registrar.selectImports(AnnotationMetadata.introspect(importer));
+		return registrar.selectImports(getMetadata(importer));
+	}
+
+	private AnnotationMetadata getMetadata(Class<?> importer) {
+		if (this.metadata == null) {
+			return AnnotationMetadata.introspect(importer);
+		}
+		return this.metadata.computeIfAbsent(importer, AnnotationMetadata::introspect);
 	}
 
 	static class DeferredConfigurations extends AutoConfigurations {
@@ -254,23 +327,11 @@ public class FunctionalInstallerImportRegistrars implements BeanDefinitionRegist
 
 	}
 
-	private Set<Imported> prioritize(Set<Imported> registrars) {
-		Set<Imported> result = new LinkedHashSet<>();
-		for (Imported imported : registrars) {
-			if (imported.getType() != null
-					&& imported.getType().getName().startsWith(AutoConfigurationPackages.class.getName())) {
-				result.add(imported);
-			}
-		}
-		result.addAll(registrars);
-		return result;
-	}
-
 	public void importRegistrar(BeanDefinitionRegistry registry, Imported imported) {
 		Class<?> type = imported.getType();
 		Object bean = context.getAutowireCapableBeanFactory().createBean(type);
 		ImportBeanDefinitionRegistrar registrar = (ImportBeanDefinitionRegistrar) bean;
-		registrar.registerBeanDefinitions(AnnotationMetadata.introspect(imported.getSource()), registry,
+		registrar.registerBeanDefinitions(getMetadata(imported.getSource()), registry,
 				IMPORT_BEAN_NAME_GENERATOR);
 	}
 
@@ -19,12 +19,13 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -41,9 +42,9 @@ import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.WebApplicationType;
-import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.context.event.ApplicationContextInitializedEvent;
 import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.web.reactive.context.AnnotationConfigReactiveWebApplicationContext;
 import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
 import org.springframework.boot.web.servlet.context.AnnotationConfigServletWebServerApplicationContext;
@@ -63,9 +64,8 @@ import org.springframework.core.PriorityOrdered;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.ResourceLoader;
-import org.springframework.core.io.support.SpringFactoriesLoader;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
-import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
 import org.springframework.util.ReflectionUtils;
 
 /**
@@ -76,16 +76,17 @@ public class FunctionalInstallerListener implements SmartApplicationListener {
 
 	private static final Log logger = LogFactory.getLog(FunctionalInstallerListener.class);
 
-	// TODO: make this class stateless
-	private Collection<ApplicationContextInitializer<GenericApplicationContext>> initializers = new LinkedHashSet<>();
+	// Separate from the main logger so that the timings can be switched on on their own
+	private static final Log timings = LogFactory.getLog(FunctionalInstallerListener.class.getName() + ".timings");
 
-	private Collection<ApplicationContextInitializer<GenericApplicationContext>> autos = new LinkedHashSet<>();
+	// Shared by all the applications (and contexts) with the same class loader
+	private static final Map<ClassLoader, AutoConfigurationCandidates> candidates = new ConcurrentReferenceHashMap<>();
 
-	private Set<Class<? extends ApplicationContextInitializer<?>>> added = new LinkedHashSet<>();
-
-	private Set<String> autoTypeNames = new LinkedHashSet<>();
-
-	private Map<Class<?>, Class<? extends ApplicationContextInitializer<?>>> autoTypes = new HashMap<>();
+	// The state for each application run, from when the environment is prepared until the
+	// context is initialized (keyed by the application, because Spring Boot can replace
+	// the environment in between, and only weakly referenced in case the run fails)
+	private final Map<SpringApplication, Installation> installations = Collections
+			.synchronizedMap(new WeakHashMap<>());
 
 	@Override
 	public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
@@ -105,11 +106,21 @@ public class FunctionalInstallerListener implements SmartApplicationListener {
 				return;
 			}
 			GenericApplicationContext generic = (GenericApplicationContext) context;
+			Installation installation = this.installations.remove(initialized.getSpringApplication());
+			if (installation == null) {
+				installation = new Installation(getCandidates(generic.getClassLoader()));
+				findInitializers(initialized.getSpringApplication(), installation);
+			}
 			ConditionService conditions = new SimpleConditionService(generic, generic.getBeanFactory(),
 					context.getEnvironment(), context);
-			initialize(generic, conditions);
-			functional(generic, conditions);
-			apply(generic, initialized.getSpringApplication(), conditions);
+			initialize(generic, installation, conditions);
+			functional(generic);
+			apply(generic, installation);
+			if (isLazy(context.getEnvironment())) {
+				// Ahead of the one from Spring Boot (if there is one), which then has nothing
+				// left to do, so it doesn't ask for the type of every bean
+				generic.addBeanFactoryPostProcessor(new LazyInitializationPostProcessor());
+			}
 		}
 		else if (event instanceof ApplicationEnvironmentPreparedEvent) {
 			ApplicationEnvironmentPreparedEvent prepared = (ApplicationEnvironmentPreparedEvent) event;
@@ -118,8 +129,13 @@ public class FunctionalInstallerListener implements SmartApplicationListener {
 			}
 			logger.info("Preparing application context");
 			SpringApplication application = prepared.getSpringApplication();
-			findInitializers(application);
-			WebApplicationType type = application.getWebApplicationType();
+			Installation installation = new Installation(getCandidates(application.getClassLoader()));
+			this.installations.put(application, installation);
+			findInitializers(application, installation);
+			// Spring Boot binds spring.main.* to the application after this event
+			WebApplicationType type = Binder.get(prepared.getEnvironment())
+					.bind("spring.main.web-application-type", WebApplicationType.class)
+					.orElse(application.getWebApplicationType());
 			Class<?> contextType = getApplicationContextType(application);
 			if (type == WebApplicationType.NONE) {
 				if (contextType == AnnotationConfigApplicationContext.class || contextType == null) {
@@ -139,16 +155,27 @@ public class FunctionalInstallerListener implements SmartApplicationListener {
 		}
 	}
 
-	private void findInitializers(SpringApplication application) {
+	private static AutoConfigurationCandidates getCandidates(ClassLoader classLoader) {
+		AutoConfigurationCandidates result = candidates.get(classLoader);
+		if (result == null) {
+			result = new AutoConfigurationCandidates(classLoader);
+			AutoConfigurationCandidates existing = candidates.putIfAbsent(classLoader, result);
+			if (existing != null) {
+				result = existing;
+			}
+		}
+		return result;
+	}
+
+	private void findInitializers(SpringApplication application, Installation installation) {
+		InitializerIndex index = InitializerIndex.get(application.getClassLoader());
 		for (Object source : application.getAllSources()) {
 			if (source instanceof Class<?>) {
 				Class<?> type = (Class<?>) source;
-				String cls = type.getName().replace("$", "_") + "Initializer";
-				if (ClassUtils.isPresent(cls, application.getClassLoader())) {
-					@SuppressWarnings("unchecked")
-					Class<? extends ApplicationContextInitializer<?>> initializer = (Class<? extends ApplicationContextInitializer<?>>) ClassUtils
-							.resolveClassName(cls, application.getClassLoader());
-					addInitializer(initializer);
+				Class<? extends ApplicationContextInitializer<?>> initializer = index
+						.getInitializerType(type.getName());
+				if (initializer != null) {
+					installation.addInitializer(initializer);
 					remove(application, source);
 				}
 			}
@@ -183,40 +210,50 @@ public class FunctionalInstallerListener implements SmartApplicationListener {
 		return environment.getProperty("spring.functional.enabled", Boolean.class, true);
 	}
 
-	private void functional(GenericApplicationContext context, ConditionService conditions) {
+	private void functional(GenericApplicationContext context) {
 		context.registerBean(AnnotationConfigUtils.CONFIGURATION_ANNOTATION_PROCESSOR_BEAN_NAME,
 				SlimConfigurationClassPostProcessor.class, () -> new SlimConfigurationClassPostProcessor());
 		AnnotationConfigUtils.registerAnnotationConfigProcessors(context);
 	}
 
-	private void initialize(GenericApplicationContext context, ConditionService conditions) {
+	private void initialize(GenericApplicationContext context, Installation installation,
+			ConditionService conditions) {
+		long start = System.nanoTime();
+		// Only the first context with this class loader has to do any work
+		installation.candidates.probe(isParallelProbe(context.getEnvironment()));
+		time("probe", start);
+		if (isParallelConditions(context.getEnvironment())) {
+			start = System.nanoTime();
+			CompiledConditions.prepare(context.getClassLoader(), context.getEnvironment().getProperty(
+					"spring.functional.parallel-conditions-threads", Integer.class,
+					Runtime.getRuntime().availableProcessors()));
+			time("conditions", start);
+		}
 		if (!context.getBeanFactory().containsBeanDefinition(ConditionService.class.getName())) {
 			context.registerBean(ConditionService.class, () -> conditions);
-			context.registerBean(ImportRegistrars.class, () -> new FunctionalInstallerImportRegistrars(context));
+			context.registerBean(ImportRegistrars.class,
+					() -> new FunctionalInstallerImportRegistrars(context, installation.candidates));
 		}
-		this.autoTypeNames = new HashSet<>(
-				SpringFactoriesLoader.loadFactoryNames(EnableAutoConfiguration.class, context.getClassLoader()));
-		for (String autoName : autoTypeNames) {
-			String typeName = autoName + "Initializer";
-			if (ClassUtils.isPresent(autoName, context.getClassLoader())
-					&& ClassUtils.isPresent(typeName, context.getClassLoader())) {
-				@SuppressWarnings("unchecked")
-				Class<? extends ApplicationContextInitializer<?>> module = (Class<? extends ApplicationContextInitializer<?>>) ClassUtils
-						.resolveClassName(typeName, context.getClassLoader());
-				try {
-					this.autoTypes.put(ClassUtils.resolveClassName(autoName, context.getClassLoader()), module);
-				}
-				catch (Throwable t) {
-					throw new IllegalStateException(
-							"Problem processing @Import/configurations() on " + module.getName(), t);
-				}
-			}
+	}
+
+	private boolean isParallelProbe(ConfigurableEnvironment environment) {
+		return environment.getProperty("spring.functional.parallel-probe", Boolean.class, false);
+	}
+
+	private boolean isParallelConditions(ConfigurableEnvironment environment) {
+		return environment.getProperty("spring.functional.parallel-conditions", Boolean.class, false);
+	}
+
+	private static void time(String phase, long start) {
+		if (timings.isDebugEnabled()) {
+			timings.debug("Phase time: " + phase + "=" + (System.nanoTime() - start) / 1000000.);
 		}
 	}
 
-	private void apply(GenericApplicationContext context) {
+	private void apply(GenericApplicationContext context, Installation installation) {
+		long start = System.nanoTime();
 		List<ApplicationContextInitializer<GenericApplicationContext>> initializers = new ArrayList<>();
-		for (ApplicationContextInitializer<GenericApplicationContext> result : this.initializers) {
+		for (ApplicationContextInitializer<GenericApplicationContext> result : installation.initializers) {
 			initializers.add(result);
 		}
 		OrderComparator.sort(initializers);
@@ -227,38 +264,81 @@ public class FunctionalInstallerListener implements SmartApplicationListener {
 			initializer.initialize(context);
 		}
 		initializers = new ArrayList<>();
-		for (ApplicationContextInitializer<GenericApplicationContext> result : this.autos) {
+		for (ApplicationContextInitializer<GenericApplicationContext> result : installation.autos) {
 			initializers.add(result);
 		}
 		if (logger.isDebugEnabled()) {
 			logger.debug("Applying autoconfig " + initializers);
 		}
-		// TODO: sort into autoconfiguration order as well
-		OrderComparator.sort(initializers);
+		initializers = sort(context, initializers);
 		for (ApplicationContextInitializer<GenericApplicationContext> initializer : initializers) {
 			initializer.initialize(context);
 		}
+		time("apply", start);
 	}
 
-	private void apply(GenericApplicationContext context, SpringApplication application, ConditionService conditions) {
-		apply(context);
-	}
-
-	@SuppressWarnings("unchecked")
-	private void addInitializer(Class<? extends ApplicationContextInitializer<?>> type) {
-		if (type == null || this.added.contains(type)) {
-			return;
+	private List<ApplicationContextInitializer<GenericApplicationContext>> sort(GenericApplicationContext context,
+			List<ApplicationContextInitializer<GenericApplicationContext>> initializers) {
+		InitializerIndex index = InitializerIndex.get(context.getClassLoader());
+		// More than one initializer can come from the same configuration class
+		Map<String, List<ApplicationContextInitializer<GenericApplicationContext>>> configs = new LinkedHashMap<>();
+		for (ApplicationContextInitializer<GenericApplicationContext> initializer : initializers) {
+			configs.computeIfAbsent(index.getConfigurationName(initializer.getClass().getName()),
+					key -> new ArrayList<>()).add(initializer);
 		}
-		if (logger.isDebugEnabled()) {
-			logger.debug("Adding initializer: " + type);
+		// Use the autoconfiguration order worked out at build time if we can
+		List<String> sorted = configs.containsKey(null) ? null : index.sort(configs.keySet());
+		if (sorted == null) {
+			OrderComparator.sort(initializers);
+			return initializers;
+		}
+		List<ApplicationContextInitializer<GenericApplicationContext>> result = new ArrayList<>();
+		for (String name : sorted) {
+			result.addAll(configs.get(name));
 		}
-		this.added.add(type);
-		if (this.autoTypeNames.contains(type.getName())) {
-			this.autos.add(BeanUtils.instantiateClass(type, ApplicationContextInitializer.class));
+		// Stable, so an explicit order still wins, and the rest stay as they are
+		OrderComparator.sort(result);
+		return result;
+	}
+
+	private boolean isLazy(ConfigurableEnvironment environment) {
+		return environment.getProperty("spring.functional.lazy-initialization", Boolean.class, false);
+	}
+
+	/**
+	 * The initializers for one application run.
+	 */
+	private static class Installation {
+
+		private final AutoConfigurationCandidates candidates;
+
+		private final Collection<ApplicationContextInitializer<GenericApplicationContext>> initializers = new LinkedHashSet<>();
+
+		private final Collection<ApplicationContextInitializer<GenericApplicationContext>> autos = new LinkedHashSet<>();
+
+		private final Set<Class<? extends ApplicationContextInitializer<?>>> added = new LinkedHashSet<>();
+
+		Installation(AutoConfigurationCandidates candidates) {
+			this.candidates = candidates;
 		}
-		else {
-			initializers.add(BeanUtils.instantiateClass(type, ApplicationContextInitializer.class));
+
+		@SuppressWarnings("unchecked")
+		void addInitializer(Class<? extends ApplicationContextInitializer<?>> type) {
+			if (type == null || this.added.contains(type)) {
+				return;
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Adding initializer: " + type);
+			}
+			this.added.add(type);
+			if (this.candidates.getNames().contains(type.getName())) {
+				this.autos.add(BeanUtils.instantiateClass(type, ApplicationContextInitializer.class));
+			}
+			else {
+				this.initializers.add(BeanUtils.instantiateClass(type, ApplicationContextInitializer.class));
+			}
 		}
+
 	}
 
 	public static void invokeAwareMethods(Object target, Environment environment, ResourceLoader resourceLoader,
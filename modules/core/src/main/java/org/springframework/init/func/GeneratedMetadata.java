@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.core.annotation.MergedAnnotation;
+import org.springframework.core.annotation.MergedAnnotations;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.core.type.StandardClassMetadata;
+
+/**
+ * Factory methods for the annotation metadata that the processor generates for
+ * conditional configuration classes and bean methods. It carries the annotations that
+ * are declared directly on the element, with only the attribute values that were
+ * declared explicitly (the rest are defaults, as usual). Class values are held as class
+ * names, like in metadata read from a class file, so they don't have to be present.
+ *
+ * @author Dave Syer
+ *
+ */
+public abstract class GeneratedMetadata {
+
+	/**
+	 * Metadata for a configuration class.
+	 * @param type the configuration class
+	 * @param annotations the annotations on the class
+	 */
+	public static AnnotationMetadata type(Class<?> type, MergedAnnotation<?>... annotations) {
+		return new TypeMetadata(type, MergedAnnotations.of(Arrays.asList(annotations)));
+	}
+
+	/**
+	 * Metadata for a bean method.
+	 * @param declaringClassName the name of the class that declares the method
+	 * @param name the name of the method
+	 * @param returnTypeName the name of the (erased) return type
+	 * @param modifiers the method modifiers (as in {@link Modifier})
+	 * @param annotations the annotations on the method
+	 */
+	public static MethodMetadata method(String declaringClassName, String name, String returnTypeName, int modifiers,
+			MergedAnnotation<?>... annotations) {
+		return new BeanMethodMetadata(declaringClassName, name, returnTypeName, modifiers,
+				MergedAnnotations.of(Arrays.asList(annotations)));
+	}
+
+	/**
+	 * An annotation with some explicit attribute values.
+	 * @param type the annotation type
+	 * @param attributes alternating attribute names and values
+	 */
+	public static <A extends Annotation> MergedAnnotation<A> annotation(Class<A> type, Object... attributes) {
+		Map<String, Object> values = new LinkedHashMap<>();
+		for (int i = 0; i < attributes.length; i += 2) {
+			values.put((String) attributes[i], attributes[i + 1]);
+		}
+		return MergedAnnotation.of(null, null, type, values);
+	}
+
+	private static class TypeMetadata extends StandardClassMetadata implements AnnotationMetadata {
+
+		private final MergedAnnotations annotations;
+
+		TypeMetadata(Class<?> type, MergedAnnotations annotations) {
+			super(type);
+			this.annotations = annotations;
+		}
+
+		@Override
+		public MergedAnnotations getAnnotations() {
+			return this.annotations;
+		}
+
+		@Override
+		public Set<MethodMetadata> getAnnotatedMethods(String annotationName) {
+			// Conditions don't look at the methods (and the bean methods have their own)
+			return Collections.emptySet();
+		}
+
+		@Override
+		public String toString() {
+			return getClassName();
+		}
+
+	}
+
+	private static class BeanMethodMetadata implements MethodMetadata {
+
+		private final String declaringClassName;
+
+		private final String name;
+
+		private final String returnTypeName;
+
+		private final int modifiers;
+
+		private final MergedAnnotations annotations;
+
+		BeanMethodMetadata(String declaringClassName, String name, String returnTypeName, int modifiers,
+				MergedAnnotations annotations) {
+			this.declaringClassName = declaringClassName;
+			this.name = name;
+			this.returnTypeName = returnTypeName;
+			this.modifiers = modifiers;
+			this.annotations = annotations;
+		}
+
+		@Override
+		public MergedAnnotations getAnnotations() {
+			return this.annotations;
+		}
+
+		@Override
+		public String getMethodName() {
+			return this.name;
+		}
+
+		@Override
+		public String getDeclaringClassName() {
+			return this.declaringClassName;
+		}
+
+		@Override
+		public String getReturnTypeName() {
+			return this.returnTypeName;
+		}
+
+		@Override
+		public boolean isAbstract() {
+			return Modifier.isAbstract(this.modifiers);
+		}
+
+		@Override
+		public boolean isStatic() {
+			return Modifier.isStatic(this.modifiers);
+		}
+
+		@Override
+		public boolean isFinal() {
+			return Modifier.isFinal(this.modifiers);
+		}
+
+		@Override
+		public boolean isOverridable() {
+			return !isStatic() && !isFinal() && !Modifier.isPrivate(this.modifiers);
+		}
+
+		@Override
+		public String toString() {
+			return this.declaringClassName + "." + this.name + "()";
+		}
+
+	}
+
+}
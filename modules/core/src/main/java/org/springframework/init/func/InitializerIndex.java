@@ -0,0 +1,272 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.StringUtils;
+
+/**
+ * Index of configuration class names to the names of their generated initializers,
+ * merged from all the <code>META-INF/spring-init.index</code> files written by the
+ * annotation processor, together with the auto-configuration ordering worked out at build
+ * time (keys of the form <code>type#attribute</code>). A package is assumed to be
+ * complete in the jar (or directory) that its index came from, so a configuration class
+ * that was loaded from there and has no entry has no initializer, and nobody needs to
+ * probe the class loader for one. Other classes (e.g. in a split package, or compiled
+ * without the index) fall back to the naming convention.
+ *
+ * @author Dave Syer
+ *
+ */
+public class InitializerIndex {
+
+	private static final Log logger = LogFactory.getLog(InitializerIndex.class);
+
+	public static final String INDEX_LOCATION = "META-INF/spring-init.index";
+
+	private static final Map<ClassLoader, InitializerIndex> cache = new ConcurrentReferenceHashMap<>();
+
+	private final ClassLoader classLoader;
+
+	private final Map<String, String> initializers = new HashMap<>();
+
+	private final Map<String, String> configurations = new HashMap<>();
+
+	// Package name to the roots (jars or directories) of the indexes that cover it
+	private final Map<String, Set<String>> packages = new HashMap<>();
+
+	private final Map<String, Integer> ordinals = new HashMap<>();
+
+	// Type name to the root of the index that its ordinal came from
+	private final Map<String, String> roots = new HashMap<>();
+
+	private final Map<String, Integer> orders = new HashMap<>();
+
+	private final Map<String, Set<String>> before = new HashMap<>();
+
+	private final Map<String, Set<String>> after = new HashMap<>();
+
+	private final AutoConfigurationOrdering ordering = new AutoConfigurationOrdering() {
+
+		@Override
+		public int getOrder(String name) {
+			return orders.getOrDefault(name, DEFAULT_ORDER);
+		}
+
+		@Override
+		public Set<String> getBefore(String name) {
+			return before.getOrDefault(name, Collections.emptySet());
+		}
+
+		@Override
+		public Set<String> getAfter(String name) {
+			return after.getOrDefault(name, Collections.emptySet());
+		}
+
+	};
+
+	private InitializerIndex(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+		try {
+			Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				String root = getRoot(url, INDEX_LOCATION);
+				Properties properties = PropertiesLoaderUtils.loadProperties(new UrlResource(url));
+				for (String name : properties.stringPropertyNames()) {
+					String value = properties.getProperty(name);
+					int attribute = name.indexOf("#");
+					if (attribute > 0) {
+						addAttribute(root, name.substring(0, attribute), name.substring(attribute + 1), value);
+					}
+					else {
+						this.initializers.put(name, value);
+						this.configurations.put(value, name);
+						this.packages.computeIfAbsent(ClassUtils.getPackageName(name), key -> new HashSet<>())
+								.add(root);
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalArgumentException("Unable to load initializer index from location [" + INDEX_LOCATION
+					+ "]", e);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Loaded " + this.initializers.size() + " initializers from " + INDEX_LOCATION);
+		}
+	}
+
+	private static String getRoot(URL url, String path) {
+		String location = url.toString();
+		return location.endsWith(path) ? location.substring(0, location.length() - path.length()) : location;
+	}
+
+	private void addAttribute(String root, String type, String attribute, String value) {
+		switch (attribute) {
+		case "ordinal":
+			this.ordinals.put(type, Integer.valueOf(value));
+			this.roots.put(type, root);
+			break;
+		case "order":
+			this.orders.put(type, Integer.valueOf(value));
+			break;
+		case "before":
+			this.before.put(type, StringUtils.commaDelimitedListToSet(value));
+			break;
+		case "after":
+			this.after.put(type, StringUtils.commaDelimitedListToSet(value));
+			break;
+		default:
+			break;
+		}
+	}
+
+	public static InitializerIndex get(ClassLoader classLoader) {
+		if (classLoader == null) {
+			classLoader = ClassUtils.getDefaultClassLoader();
+		}
+		return cache.computeIfAbsent(classLoader, InitializerIndex::new);
+	}
+
+	/**
+	 * The name of the initializer for this configuration class, or null if there isn't
+	 * one.
+	 * @param type the (binary) name of the configuration class
+	 */
+	public String getInitializerName(String type) {
+		String initializer = this.initializers.get(type);
+		if (initializer != null) {
+			return initializer;
+		}
+		if (isIndexed(type)) {
+			return null;
+		}
+		String name = type.replace("$", "_") + "Initializer";
+		return ClassUtils.isPresent(name, this.classLoader) ? name : null;
+	}
+
+	/**
+	 * Whether the type comes from the same jar (or directory) as an index that covers
+	 * its package, in which case it would have an entry if it had an initializer.
+	 */
+	private boolean isIndexed(String type) {
+		Set<String> roots = this.packages.get(ClassUtils.getPackageName(type));
+		if (roots == null) {
+			return false;
+		}
+		String path = ClassUtils.convertClassNameToResourcePath(type) + ClassUtils.CLASS_FILE_SUFFIX;
+		URL url = this.classLoader.getResource(path);
+		return url != null && roots.contains(getRoot(url, path));
+	}
+
+	/**
+	 * The name of the configuration class for this initializer, or null if it is not in
+	 * the index.
+	 * @param initializer the name of the initializer class
+	 */
+	public String getConfigurationName(String initializer) {
+		return this.configurations.get(initializer);
+	}
+
+	/**
+	 * The names of all the initializers in the index.
+	 */
+	public Set<String> getInitializerNames() {
+		return Collections.unmodifiableSet(this.configurations.keySet());
+	}
+
+	/**
+	 * Sort the configuration classes into the order they should be applied, using the
+	 * ordering that the processor worked out at build time. If they all come from the
+	 * same index they are sorted by their ordinals (their position in the list that the
+	 * processor sorted), which respects all the constraints between them. The ordinals
+	 * from different indexes are not comparable, so a mixture is sorted with the same
+	 * rules as <code>AutoConfigurations</code>, using the order and constraints from the
+	 * indexes (so there is still no class metadata to read), with ties broken by name, as
+	 * they are in Spring Boot, whichever jar the classes came from.
+	 * @param names the (binary) names of the configuration classes
+	 * @return the sorted names, or null if any of them is not in an index
+	 */
+	public List<String> sort(Collection<String> names) {
+		Set<String> roots = new HashSet<>();
+		for (String name : names) {
+			if (!this.ordinals.containsKey(name)) {
+				return null;
+			}
+			roots.add(this.roots.get(name));
+		}
+		if (roots.size() > 1) {
+			return this.ordering.sort(names);
+		}
+		List<String> result = new ArrayList<>(new LinkedHashSet<>(names));
+		result.sort(Comparator.comparing(this.ordinals::get));
+		return result;
+	}
+
+	/**
+	 * The initializer class for this configuration class, or null if there isn't one.
+	 * @param type the (binary) name of the configuration class
+	 */
+	@SuppressWarnings("unchecked")
+	public Class<? extends ApplicationContextInitializer<?>> getInitializerType(String type) {
+		String name = getInitializerName(type);
+		if (name == null) {
+			return null;
+		}
+		return (Class<? extends ApplicationContextInitializer<?>>) ClassUtils.resolveClassName(name,
+				this.classLoader);
+	}
+
+	/**
+	 * A new instance of the initializer for this configuration class, or null if there
+	 * isn't one.
+	 * @param type the (binary) name of the configuration class
+	 */
+	@SuppressWarnings("unchecked")
+	public ApplicationContextInitializer<GenericApplicationContext> getInitializer(String type) {
+		Class<?> initializer = getInitializerType(type);
+		if (initializer == null) {
+			return null;
+		}
+		return BeanUtils.instantiateClass(initializer, ApplicationContextInitializer.class);
+	}
+
+}
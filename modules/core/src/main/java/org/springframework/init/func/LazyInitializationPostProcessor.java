@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Lazy initialization for a functional application context. It does the same job as
+ * the one in Spring Boot, but without asking the bean factory for the type of every
+ * bean (which can mean instantiating factory beans, or at least resolving generics from
+ * factory methods). Bean definitions that say whether they are lazy are left alone,
+ * and the generated initializers say so (not lazy) for beans that have to exist when the
+ * context starts (the {@link EagerTypes}). Other beans are lazy unless the definition
+ * has a bean class that is one of the same types, or is excluded by a
+ * {@link LazyInitializationExcludeFilter} (the filters are looked up once, but there are
+ * no other queries by type), and then they are marked explicitly as not lazy, so that
+ * the one in Spring Boot leaves them alone as well if it is also switched on.
+ * Infrastructure beans are treated the same as any other, like they are in Spring Boot.
+ * It is only used if <code>spring.functional.lazy-initialization=true</code> (otherwise
+ * <code>spring.main.lazy-initialization</code> is left to Spring Boot).
+ *
+ * @author Dave Syer
+ *
+ */
+class LazyInitializationPostProcessor implements BeanFactoryPostProcessor {
+
+	@Override
+	public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+		List<Class<?>> eager = getEagerTypes(beanFactory.getBeanClassLoader());
+		// One lookup by type, for the exclusions that other libraries contribute
+		Collection<LazyInitializationExcludeFilter> filters = beanFactory
+				.getBeansOfType(LazyInitializationExcludeFilter.class, false, false).values();
+		for (String name : beanFactory.getBeanDefinitionNames()) {
+			BeanDefinition definition = beanFactory.getBeanDefinition(name);
+			if (isExplicit(definition)) {
+				continue;
+			}
+			Class<?> type = getType(definition);
+			definition.setLazyInit(type == null || !(isEager(eager, type) || isExcluded(filters, name, definition, type)));
+		}
+	}
+
+	private boolean isExplicit(BeanDefinition definition) {
+		if (definition instanceof AbstractBeanDefinition) {
+			return ((AbstractBeanDefinition) definition).getLazyInit() != null;
+		}
+		// No way to tell if it was set, so only if it is lazy already
+		return definition.isLazyInit();
+	}
+
+	private Class<?> getType(BeanDefinition definition) {
+		if (definition instanceof AbstractBeanDefinition && ((AbstractBeanDefinition) definition).hasBeanClass()) {
+			return ((AbstractBeanDefinition) definition).getBeanClass();
+		}
+		return null;
+	}
+
+	private List<Class<?>> getEagerTypes(ClassLoader classLoader) {
+		List<Class<?>> types = new ArrayList<>();
+		for (String name : EagerTypes.NAMES) {
+			if (ClassUtils.isPresent(name, classLoader)) {
+				types.add(ClassUtils.resolveClassName(name, classLoader));
+			}
+		}
+		return types;
+	}
+
+	private boolean isEager(List<Class<?>> eager, Class<?> type) {
+		for (Class<?> candidate : eager) {
+			if (candidate.isAssignableFrom(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isExcluded(Collection<LazyInitializationExcludeFilter> filters, String name,
+			BeanDefinition definition, Class<?> type) {
+		for (LazyInitializationExcludeFilter filter : filters) {
+			if (filter.isExcluded(name, definition, type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.func;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Index of the configuration classes registered in a bean factory, so that initializers
+ * can tell whether a configuration class is already registered without asking the bean
+ * factory for bean names by type (which has to resolve the type of every bean definition
+ * every time). The index records the bean class of every bean definition, and its
+ * superclasses, so a configuration class counts as registered if it or a subclass of it
+ * is registered under any name (e.g. a component scanned "fooConfiguration"). Bean
+ * definitions are tracked by name, and each time the index is used it only has to check
+ * that the definition under each name is the same object as last time, so new, removed
+ * and overridden bean definitions are all picked up, but each one is only introspected
+ * once. The index is stored as a singleton in the bean factory, so it lives exactly as
+ * long as the bean factory does.
+ *
+ * @author Dave Syer
+ *
+ */
+public class RegistrationIndex {
+
+	private static final String BEAN_NAME = RegistrationIndex.class.getName();
+
+	private final ConfigurableListableBeanFactory beanFactory;
+
+	// Bean name to the definition and the types it contributes
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	// Type name to the number of bean definitions that contribute it
+	private final Map<String, Integer> types = new HashMap<>();
+
+	// Types that callers said they were about to register, and are not registered yet
+	private final Set<String> claimed = new HashSet<>();
+
+	private RegistrationIndex(ConfigurableListableBeanFactory beanFactory) {
+		this.beanFactory = beanFactory;
+	}
+
+	public static RegistrationIndex get(GenericApplicationContext context) {
+		ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+		synchronized (beanFactory) {
+			if (beanFactory.containsSingleton(BEAN_NAME)) {
+				return (RegistrationIndex) beanFactory.getSingleton(BEAN_NAME);
+			}
+			RegistrationIndex index = new RegistrationIndex(beanFactory);
+			beanFactory.registerSingleton(BEAN_NAME, index);
+			return index;
+		}
+	}
+
+	/**
+	 * Record that the caller is about to register the configuration class, unless it
+	 * (or a subclass) is registered already.
+	 * @param type the configuration class
+	 * @return true if the caller should go ahead and register the configuration class
+	 * (i.e. nobody has done it yet)
+	 */
+	public synchronized boolean register(Class<?> type) {
+		update();
+		return !this.types.containsKey(type.getName()) && this.claimed.add(type.getName());
+	}
+
+	/**
+	 * Whether the configuration class (or a subclass) has been registered.
+	 * @param type the configuration class
+	 */
+	public synchronized boolean isRegistered(Class<?> type) {
+		update();
+		return this.types.containsKey(type.getName()) || this.claimed.contains(type.getName());
+	}
+
+	private void update() {
+		String[] names = this.beanFactory.getBeanDefinitionNames();
+		for (String name : names) {
+			BeanDefinition definition;
+			try {
+				definition = this.beanFactory.getBeanDefinition(name);
+			}
+			catch (NoSuchBeanDefinitionException e) {
+				// Removed since we asked for the names
+				continue;
+			}
+			Entry entry = this.entries.get(name);
+			if (entry != null && entry.definition == definition) {
+				continue;
+			}
+			if (entry != null) {
+				remove(entry);
+			}
+			entry = new Entry(definition, getTypes(definition));
+			this.entries.put(name, entry);
+			for (String type : entry.types) {
+				this.types.merge(type, 1, Integer::sum);
+				this.claimed.remove(type);
+			}
+		}
+		if (this.entries.size() > names.length) {
+			// Some were removed
+			for (Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator(); iterator
+					.hasNext();) {
+				Map.Entry<String, Entry> item = iterator.next();
+				if (!this.beanFactory.containsBeanDefinition(item.getKey())) {
+					remove(item.getValue());
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	private void remove(Entry entry) {
+		for (String type : entry.types) {
+			this.types.computeIfPresent(type, (key, count) -> count > 1 ? count - 1 : null);
+		}
+	}
+
+	private List<String> getTypes(BeanDefinition definition) {
+		String name = definition.getBeanClassName();
+		if (name == null) {
+			return Collections.emptyList();
+		}
+		List<String> result = new ArrayList<>();
+		result.add(name);
+		Class<?> type = null;
+		if (definition instanceof AbstractBeanDefinition && ((AbstractBeanDefinition) definition).hasBeanClass()) {
+			type = ((AbstractBeanDefinition) definition).getBeanClass();
+		}
+		else {
+			try {
+				type = ClassUtils.forName(name, this.beanFactory.getBeanClassLoader());
+			}
+			catch (Throwable e) {
+				// Not a class we can load, so nobody can ask for it or its superclasses
+			}
+		}
+		if (type != null) {
+			for (type = type.getSuperclass(); type != null && type != Object.class; type = type.getSuperclass()) {
+				result.add(type.getName());
+			}
+		}
+		return result;
+	}
+
+	private static class Entry {
+
+		private final BeanDefinition definition;
+
+		private final List<String> types;
+
+		Entry(BeanDefinition definition, List<String> types) {
+			this.definition = definition;
+			this.types = types;
+		}
+
+	}
+
+}
@@ -17,18 +17,27 @@
 package org.springframework.init.func;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.ConfigurationCondition.ConfigurationPhase;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.type.AnnotationMetadata;
@@ -51,8 +60,18 @@ public class SimpleConditionService implements ConditionService {
 
 	private final ClassLoader classLoader;
 
+	private final ConditionOutcomeCache cache;
+
 	private final Map<Class<?>, AnnotationMetadata> metadata = new ConcurrentHashMap<>();
 
+	private final Map<Class<?>, BeanMethods> beanMethods = new ConcurrentHashMap<>();
+
+	private final Map<Class<?>, Optional<ConditionMetadataSource>> sources = new ConcurrentHashMap<>();
+
+	private final Map<Class<?>, Optional<AnnotationMetadata>> generated = new ConcurrentHashMap<>();
+
+	private final Map<String, Optional<MethodMetadata>> generatedMethods = new ConcurrentHashMap<>();
+
 	private ConfigurableListableBeanFactory beanFactory;
 
 	private MetadataReaderFactory metadataReaderFactory;
@@ -60,15 +79,33 @@ public class SimpleConditionService implements ConditionService {
 	public SimpleConditionService(BeanDefinitionRegistry registry, ConfigurableListableBeanFactory beanFactory,
 			Environment environment, ResourceLoader resourceLoader) {
 		this.beanFactory = beanFactory;
-		this.evaluator = new ConditionEvaluator(registry, environment, resourceLoader);
 		this.classLoader = resourceLoader.getClassLoader();
 		this.metadataReaderFactory = new CachingMetadataReaderFactory(this.classLoader);
+		this.cache = environment instanceof ConfigurableEnvironment
+				? ConditionOutcomeCache.get((ConfigurableEnvironment) environment, this.classLoader, beanFactory)
+				: null;
+		// Outcomes remembered by the evaluator would hide property reads from the cache
+		this.evaluator = new ConditionEvaluator(registry, environment, resourceLoader, this.cache == null);
+		if (this.cache != null && registry instanceof ConfigurableApplicationContext) {
+			// All the bean definitions are registered by then, so no more conditions
+			((ConfigurableApplicationContext) registry).addApplicationListener(
+					(ApplicationListener<ContextRefreshedEvent>) event -> this.cache.save());
+		}
 	}
 
 	@Override
 	public boolean matches(Class<?> type, ConfigurationPhase phase) {
+		if (this.cache != null) {
+			return this.cache.matches(type.getName() + ":" + phase, source -> source.equals(type.getName()),
+					() -> doMatches(type, phase));
+		}
+		return doMatches(type, phase);
+	}
+
+	private boolean doMatches(Class<?> type, ConfigurationPhase phase) {
 		try {
-			return !this.evaluator.shouldSkip(getMetadata(type), phase);
+			AnnotationMetadata metadata = this.generated.computeIfAbsent(type, this::getTypeMetadata).orElse(null);
+			return !this.evaluator.shouldSkip(metadata != null ? metadata : getMetadata(type), phase);
 		}
 		catch (ArrayStoreException e) {
 			return false;
@@ -82,29 +119,64 @@ public class SimpleConditionService implements ConditionService {
 
 	@Override
 	public boolean matches(Class<?> factory, Class<?> type) {
-		AnnotationMetadata metadata = getMetadata(factory);
-		Set<MethodMetadata> assignable = new HashSet<>();
-		for (MethodMetadata method : metadata.getAnnotatedMethods(Bean.class.getName())) {
-			Class<?> candidate = ClassUtils.resolveClassName(method.getReturnTypeName(), this.classLoader);
-			// Look for exact match first
-			if (type.equals(candidate)) {
-				return !this.evaluator.shouldSkip(method);
-			}
-			if (type.isAssignableFrom(candidate)) {
-				assignable.add(method);
-			}
+		if (this.cache != null) {
+			// The report has the method name, not the bean type
+			String prefix = factory.getName() + "#";
+			return this.cache.matches(prefix + type.getName(), source -> source.startsWith(prefix),
+					() -> doMatches(factory, type));
 		}
-		if (assignable.size() == 1) {
-			return !this.evaluator.shouldSkip(assignable.iterator().next());
+		return doMatches(factory, type);
+	}
+
+	private boolean doMatches(Class<?> factory, Class<?> type) {
+		MethodMetadata method = this.generatedMethods.computeIfAbsent(factory.getName() + "#" + type.getName(),
+				key -> getBeanMetadata(factory, type)).orElse(null);
+		if (method == null) {
+			method = getBeanMethods(factory).find(type);
 		}
-		// TODO: fail if size() > 1
-		Class<?> base = factory.getSuperclass();
-		if (AnnotationUtils.isAnnotationDeclaredLocally(Configuration.class, base)) {
-			return matches(base, type);
+		if (method != null) {
+			return !this.evaluator.shouldSkip(method);
 		}
 		return false;
 	}
 
+	private Optional<AnnotationMetadata> getTypeMetadata(Class<?> type) {
+		ConditionMetadataSource source = getSource(type);
+		return Optional.ofNullable(source != null ? source.getTypeMetadata() : null);
+	}
+
+	private Optional<MethodMetadata> getBeanMetadata(Class<?> factory, Class<?> type) {
+		ConditionMetadataSource source = getSource(factory);
+		return Optional.ofNullable(source != null ? source.getBeanMetadata(type) : null);
+	}
+
+	/**
+	 * The generated initializer for the configuration class, if it has metadata for the
+	 * conditions (so the class file doesn't have to be read).
+	 */
+	private ConditionMetadataSource getSource(Class<?> type) {
+		return this.sources.computeIfAbsent(type, key -> {
+			Class<?> initializer = InitializerIndex.get(this.classLoader).getInitializerType(key.getName());
+			if (initializer == null || !ConditionMetadataSource.class.isAssignableFrom(initializer)) {
+				return Optional.empty();
+			}
+			return Optional.of((ConditionMetadataSource) BeanUtils.instantiateClass(initializer));
+		}).orElse(null);
+	}
+
+	private BeanMethods getBeanMethods(Class<?> factory) {
+		BeanMethods methods = this.beanMethods.get(factory);
+		if (methods == null) {
+			Class<?> base = factory.getSuperclass();
+			// The superclass is indexed outside the compute() to avoid a recursive update
+			BeanMethods parent = AnnotationUtils.isAnnotationDeclaredLocally(Configuration.class, base)
+					? getBeanMethods(base) : null;
+			methods = this.beanMethods.computeIfAbsent(factory,
+					type -> new BeanMethods(getMetadata(type), parent, this.classLoader));
+		}
+		return methods;
+	}
+
 	@Override
 	public boolean includes(Class<?> type) {
 		if (!EXCLUDES_ENABLED) {
@@ -136,4 +208,66 @@ public class SimpleConditionService implements ConditionService {
 		});
 	}
 
+	/**
+	 * Index of the <code>@Bean</code> methods in a configuration class by return type,
+	 * so the return types are only resolved once, however many beans are conditional.
+	 */
+	private static class BeanMethods {
+
+		private final Map<Class<?>, List<MethodMetadata>> methods = new LinkedHashMap<>();
+
+		private final Map<Class<?>, Optional<MethodMetadata>> resolved = new ConcurrentHashMap<>();
+
+		private final BeanMethods parent;
+
+		BeanMethods(AnnotationMetadata metadata, BeanMethods parent, ClassLoader classLoader) {
+			this.parent = parent;
+			for (MethodMetadata method : metadata.getAnnotatedMethods(Bean.class.getName())) {
+				Class<?> candidate = resolve(method.getReturnTypeName(), classLoader);
+				if (candidate != null) {
+					this.methods.computeIfAbsent(candidate, key -> new ArrayList<>()).add(method);
+				}
+			}
+		}
+
+		private static Class<?> resolve(String name, ClassLoader classLoader) {
+			try {
+				return ClassUtils.forName(name, classLoader);
+			}
+			catch (Throwable ex) {
+				// Not on the classpath (e.g. a bean that is conditional on the class being
+				// there), so nobody can ask for a bean of that type
+				return null;
+			}
+		}
+
+		/**
+		 * The bean method for this type: an exact match for the return type if there is
+		 * one, or else the only one that is assignable, or else the same in the
+		 * superclass.
+		 */
+		MethodMetadata find(Class<?> type) {
+			return this.resolved.computeIfAbsent(type, this::resolve).orElse(null);
+		}
+
+		private Optional<MethodMetadata> resolve(Class<?> type) {
+			List<MethodMetadata> exact = this.methods.get(type);
+			if (exact != null) {
+				return Optional.of(exact.get(0));
+			}
+			Set<MethodMetadata> assignable = new HashSet<>();
+			for (Map.Entry<Class<?>, List<MethodMetadata>> entry : this.methods.entrySet()) {
+				if (type.isAssignableFrom(entry.getKey())) {
+					assignable.addAll(entry.getValue());
+				}
+			}
+			if (assignable.size() == 1) {
+				return Optional.of(assignable.iterator().next());
+			}
+			// TODO: fail if size() > 1
+			return Optional.ofNullable(this.parent != null ? this.parent.find(type) : null);
+		}
+
+	}
+
 }
@@ -4,11 +4,12 @@ import java.lang.Override;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.init.func.ImportRegistrars;
+import org.springframework.init.func.RegistrationIndex;
 
 public class BootstrapImportSelectorConfigurationInitializer implements ApplicationContextInitializer<GenericApplicationContext> {
   @Override
   public void initialize(GenericApplicationContext context) {
-    if (context.getBeanFactory().getBeanNamesForType(BootstrapImportSelectorConfiguration.class).length==0) {
+    if (RegistrationIndex.get(context).register(BootstrapImportSelectorConfiguration.class)) {
       context.getBeanFactory().getBean(ImportRegistrars.class).add(BootstrapImportSelectorConfiguration.class, "org.springframework.cloud.bootstrap.BootstrapImportSelector");
       context.registerBean(BootstrapImportSelectorConfiguration.class, () -> new BootstrapImportSelectorConfiguration());
     }
@@ -4,11 +4,12 @@ import java.lang.Override;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.init.func.ImportRegistrars;
+import org.springframework.init.func.RegistrationIndex;
 
 public class PropertySourceBootstrapConfigurationInitializer implements ApplicationContextInitializer<GenericApplicationContext> {
   @Override
   public void initialize(GenericApplicationContext context) {
-    if (context.getBeanFactory().getBeanNamesForType(PropertySourceBootstrapConfiguration.class).length==0) {
+    if (RegistrationIndex.get(context).register(PropertySourceBootstrapConfiguration.class)) {
       context.getBeanFactory().getBean(ImportRegistrars.class).add(PropertySourceBootstrapConfiguration.class, "org.springframework.boot.context.properties.EnableConfigurationPropertiesImportSelector");
       context.registerBean(PropertySourceBootstrapConfiguration.class, () -> new PropertySourceBootstrapConfiguration());
     }
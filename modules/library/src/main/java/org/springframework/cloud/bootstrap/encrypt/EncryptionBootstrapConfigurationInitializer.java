@@ -4,6 +4,7 @@ import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.init.func.ConditionService;
 import org.springframework.init.func.ImportRegistrars;
+import org.springframework.init.func.RegistrationIndex;
 
 public class EncryptionBootstrapConfigurationInitializer
 		implements ApplicationContextInitializer<GenericApplicationContext> {
@@ -12,7 +13,7 @@ public class EncryptionBootstrapConfigurationInitializer
 	public void initialize(GenericApplicationContext context) {
 		ConditionService conditions = context.getBeanFactory().getBean(ConditionService.class);
 		if (conditions.matches(EncryptionBootstrapConfiguration.class)) {
-			if (context.getBeanFactory().getBeanNamesForType(EncryptionBootstrapConfiguration.class).length == 0) {
+			if (RegistrationIndex.get(context).register(EncryptionBootstrapConfiguration.class)) {
 				new EncryptionBootstrapConfiguration_RsaEncryptionConfigurationInitializer().initialize(context);
 				new EncryptionBootstrapConfiguration_VanillaEncryptionConfigurationInitializer().initialize(context);
 				context.getBeanFactory().getBean(ImportRegistrars.class).add(EncryptionBootstrapConfiguration.class,
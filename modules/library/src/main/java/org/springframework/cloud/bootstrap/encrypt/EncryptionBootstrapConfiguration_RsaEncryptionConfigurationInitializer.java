@@ -4,6 +4,7 @@ import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.init.func.ConditionService;
 import org.springframework.init.func.ImportRegistrars;
+import org.springframework.init.func.RegistrationIndex;
 import org.springframework.security.crypto.encrypt.TextEncryptor;
 
 public class EncryptionBootstrapConfiguration_RsaEncryptionConfigurationInitializer
@@ -13,8 +14,8 @@ public class EncryptionBootstrapConfiguration_RsaEncryptionConfigurationInitiali
 	public void initialize(GenericApplicationContext context) {
 		ConditionService conditions = context.getBeanFactory().getBean(ConditionService.class);
 		if (conditions.matches(EncryptionBootstrapConfiguration.RsaEncryptionConfiguration.class)) {
-			if (context.getBeanFactory().getBeanNamesForType(
-					EncryptionBootstrapConfiguration.RsaEncryptionConfiguration.class).length == 0) {
+			if (RegistrationIndex.get(context)
+					.register(EncryptionBootstrapConfiguration.RsaEncryptionConfiguration.class)) {
 				context.getBeanFactory().getBean(ImportRegistrars.class).add(
 						EncryptionBootstrapConfiguration.RsaEncryptionConfiguration.class,
 						"org.springframework.boot.context.properties.EnableConfigurationPropertiesRegistrar");
@@ -4,6 +4,7 @@ import java.lang.Override;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.init.func.ConditionService;
+import org.springframework.init.func.RegistrationIndex;
 import org.springframework.security.crypto.encrypt.TextEncryptor;
 
 public class EncryptionBootstrapConfiguration_VanillaEncryptionConfigurationInitializer implements ApplicationContextInitializer<GenericApplicationContext> {
@@ -11,7 +12,7 @@ public class EncryptionBootstrapConfiguration_VanillaEncryptionConfigurationInit
   public void initialize(GenericApplicationContext context) {
     ConditionService conditions = context.getBeanFactory().getBean(ConditionService.class);
     if (conditions.matches(EncryptionBootstrapConfiguration.VanillaEncryptionConfiguration.class)) {
-      if (context.getBeanFactory().getBeanNamesForType(EncryptionBootstrapConfiguration.VanillaEncryptionConfiguration.class).length==0) {
+      if (RegistrationIndex.get(context).register(EncryptionBootstrapConfiguration.VanillaEncryptionConfiguration.class)) {
         context.registerBean(EncryptionBootstrapConfiguration.VanillaEncryptionConfiguration.class, () -> new EncryptionBootstrapConfiguration.VanillaEncryptionConfiguration());
         if (conditions.matches(EncryptionBootstrapConfiguration.VanillaEncryptionConfiguration.class, TextEncryptor.class)) {
           context.registerBean("textEncryptor", TextEncryptor.class, () -> context.getBean(EncryptionBootstrapConfiguration.VanillaEncryptionConfiguration.class).textEncryptor());
@@ -15,6 +15,9 @@
  */
 package org.springframework.cloud.function.compiler.java;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Options that include those that apply to the call to javac but also influence the behaviour of the compiler harness (e.g. should
  * it load classes it compiles)
@@ -24,11 +27,25 @@ package org.springframework.cloud.function.compiler.java;
 public class CompilationOptions {
 	
 	private boolean shouldLoadClasses;
+
+	private Map<String, String> processorOptions = new LinkedHashMap<>();
 	
 	public CompilationOptions() {
 		shouldLoadClasses= false;
 	}
 
+	/**
+	 * Add an annotation processor option (passed to javac as <code>-Akey=value</code>).
+	 */
+	public CompilationOptions processorOption(String key, String value) {
+		processorOptions.put(key, value);
+		return this;
+	}
+
+	public Map<String, String> getProcessorOptions() {
+		return processorOptions;
+	}
+
 	public void setLoadClasses(boolean b) {
 		shouldLoadClasses = b;
 	}
@@ -28,7 +28,7 @@ import java.io.Reader;
 import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.NestingKind;
@@ -92,7 +92,7 @@ public class InMemoryJavaFileObject implements JavaFileObject {
 		retval.location = StandardLocation.SOURCE_PATH;
 		retval.className = className;
 		retval.kind = Kind.SOURCE;
-		retval.content = content.getBytes();
+		retval.content = content.getBytes(StandardCharsets.UTF_8);
 		return retval;
 	}
 	
@@ -100,6 +100,10 @@ public class InMemoryJavaFileObject implements JavaFileObject {
 		return content;
 	}
 
+	void setContent(byte[] content) {
+		this.content = content;
+	}
+
 	public String toString() {
 		return "OutputJavaFileObject: Location="+location+",className="+className+",kind="+kind+",relativeName="+relativeName+",sibling="+sibling+",packageName="+packageName;
 	}
@@ -160,7 +164,7 @@ public class InMemoryJavaFileObject implements JavaFileObject {
 	@Override
 	public Reader openReader(boolean ignoreEncodingErrors) throws IOException {
 		logger.debug("opening reader for {}",getName());
-		return new InputStreamReader(openInputStream(), Charset.defaultCharset());
+		return new InputStreamReader(openInputStream(), StandardCharsets.UTF_8);
 	}
 
 	@Override
@@ -168,8 +172,8 @@ public class InMemoryJavaFileObject implements JavaFileObject {
 		if (kind==Kind.CLASS) {
 			throw new UnsupportedOperationException("getCharContent() not supported on file object of type CLASS: " + getName());
 		}
-		// Not yet supporting encodings
-		return (content==null?"":new String(content));
+		// Always UTF-8, whatever the platform default
+		return (content==null?"":new String(content, StandardCharsets.UTF_8));
 	}
 
 	@Override
@@ -179,7 +183,7 @@ public class InMemoryJavaFileObject implements JavaFileObject {
 			@Override
 			public void close() {
 				lastModifiedTime = System.currentTimeMillis();
-				content = new String(toCharArray()).getBytes(); // Ignoring encoding...
+				content = new String(toCharArray()).getBytes(StandardCharsets.UTF_8);
 				logger.debug("writer closed for {}: #{} bytes",getName(),content.length);
 				fileManager.recordWrite(InMemoryJavaFileObject.this);
 			};
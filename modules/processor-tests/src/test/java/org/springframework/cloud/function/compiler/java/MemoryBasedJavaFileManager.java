@@ -77,6 +77,8 @@ public class MemoryBasedJavaFileManager implements JavaFileManager {
 
 	private List<InMemoryJavaFileObject> outputFiles = new ArrayList<>();
 
+	private Map<String, InputFileDescriptor> inputResources = new HashMap<>();
+
 	private Map<String, File> resolvedAdditionalDependencies = new LinkedHashMap<>();
 
 	private String platformClasspath;
@@ -524,7 +526,13 @@ public class MemoryBasedJavaFileManager implements JavaFileManager {
 		// This can be called when the annotation config processor runs
 		// Example parameters: CLASS_OUTPUT, ,
 		// META-INF/spring-configuration-metadata.json, null
-		return InMemoryJavaFileObject.getFileObject(this, location, packageName, relativeName, sibling);
+		InMemoryJavaFileObject file = InMemoryJavaFileObject.getFileObject(this, location, packageName, relativeName, sibling);
+		// Resources from a previous build can be read back (e.g. processor state)
+		InputFileDescriptor resource = inputResources.get(file.getName().substring(1));
+		if (location == StandardLocation.CLASS_OUTPUT && resource != null) {
+			file.setContent(resource.getContent().getBytes());
+		}
+		return file;
 	}
 
 	@Override
@@ -579,6 +587,15 @@ public class MemoryBasedJavaFileManager implements JavaFileManager {
 		return resolutionMessages;
 	}
 
+	/**
+	 * Add resources that are already in the class output (e.g. from a previous build).
+	 */
+	public void addInputResources(InputFileDescriptor[] resources) {
+		for (InputFileDescriptor resource : resources) {
+			inputResources.put(resource.getName(), resource);
+		}
+	}
+
 	public void addResolvedDependencies(List<File> dependencies) {
 		for (File dependency : dependencies) {
 			resolvedAdditionalDependencies.put(dependency.toString(), dependency);
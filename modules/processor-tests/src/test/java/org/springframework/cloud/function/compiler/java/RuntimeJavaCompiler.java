@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
@@ -51,6 +52,7 @@ public class RuntimeJavaCompiler {
 		DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<JavaFileObject>();
 		MemoryBasedJavaFileManager fileManager = new MemoryBasedJavaFileManager();
 		fileManager.addResolvedDependencies(dependencies);
+		fileManager.addInputResources(resources);
 		List<JavaFileObject> compilationUnits = new ArrayList<>();
 		for (InputFileDescriptor source : sources) {
 			compilationUnits.add(InMemoryJavaFileObject
@@ -62,7 +64,12 @@ public class RuntimeJavaCompiler {
 		options.add("-source");
 		options.add("1.8");
 		options.add("-processor");
-		options.add("org.springframework.init.processor.SlimConfigurationProcessor");
+		options.add("org.springframework.init.processor.SlimConfigurationProcessor,"
+				+ "org.springframework.init.processor.IsolatingConfigurationProcessor");
+		for (Map.Entry<String, String> option : compilationOptions.getProcessorOptions()
+				.entrySet()) {
+			options.add("-A" + option.getKey() + "=" + option.getValue());
+		}
 		CompilationTask task = compiler.getTask(null, fileManager, diagnosticCollector,
 				options, null, compilationUnits);
 		boolean success = task.call();
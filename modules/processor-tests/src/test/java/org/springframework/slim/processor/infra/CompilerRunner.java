@@ -47,8 +47,13 @@ public class CompilerRunner {
 
 	public static CompilationResult run(Collection<InputFileDescriptor> sources,
 			Collection<InputFileDescriptor> resources, List<File> dependencies) {
+		return run(sources, resources, dependencies, new CompilationOptions());
+	}
+
+	public static CompilationResult run(Collection<InputFileDescriptor> sources,
+			Collection<InputFileDescriptor> resources, List<File> dependencies,
+			CompilationOptions options) {
 		RuntimeJavaCompiler compiler = new RuntimeJavaCompiler();
-		CompilationOptions options = new CompilationOptions();
 		boolean hasErrors = false;
 		System.out.println("Starting compiler...");
 		CompilationResult result = compiler.compile(
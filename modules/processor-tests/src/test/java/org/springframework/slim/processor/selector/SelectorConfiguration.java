@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.slim.processor.selector;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DeferredImportSelector;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.ImportSelector;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotationMetadata;
+
+/**
+ * Configuration classes that import selectors, one for each of the ways that the
+ * processor can (or can't) run a selector at build time.
+ *
+ * @author Dave Syer
+ *
+ */
+public class SelectorConfiguration {
+
+	@Target(ElementType.TYPE)
+	@Retention(RetentionPolicy.RUNTIME)
+	@Import(SimpleSelector.class)
+	public @interface EnableSelected {
+
+		Class<?>[] value();
+
+	}
+
+	@Configuration
+	@EnableSelected(Selected.class)
+	public static class SimpleConfiguration {
+
+	}
+
+	@Configuration
+	@Import(DeferredSelector.class)
+	public static class DeferredConfiguration {
+
+	}
+
+	@Configuration
+	@Import(AwareSelector.class)
+	public static class AwareConfiguration {
+
+	}
+
+	@Configuration
+	@Import(FailingSelector.class)
+	public static class FailingConfiguration {
+
+	}
+
+	@Configuration
+	@Import(MethodsSelector.class)
+	public static class MethodsConfiguration {
+
+	}
+
+	@Configuration
+	@Import(ConditionalSelector.class)
+	public static class ConditionalConfiguration {
+
+	}
+
+	@Configuration
+	public static class Selected {
+
+	}
+
+	@ConditionalOnClass(name = "com.example.Bar")
+	public static class ConditionalComponent {
+
+	}
+
+	public static class SimpleSelector implements ImportSelector {
+
+		@Override
+		public String[] selectImports(AnnotationMetadata metadata) {
+			return metadata.getAnnotations().get(EnableSelected.class).getStringArray("value");
+		}
+
+	}
+
+	public static class DeferredSelector implements DeferredImportSelector {
+
+		@Override
+		public String[] selectImports(AnnotationMetadata metadata) {
+			return new String[] { Selected.class.getName() };
+		}
+
+	}
+
+	public static class AwareSelector implements ImportSelector, EnvironmentAware {
+
+		@Override
+		public void setEnvironment(Environment environment) {
+		}
+
+		@Override
+		public String[] selectImports(AnnotationMetadata metadata) {
+			return new String[] { Selected.class.getName() };
+		}
+
+	}
+
+	public static class FailingSelector implements ImportSelector {
+
+		@Override
+		public String[] selectImports(AnnotationMetadata metadata) {
+			throw new IllegalStateException("Planned");
+		}
+
+	}
+
+	public static class MethodsSelector implements ImportSelector {
+
+		@Override
+		public String[] selectImports(AnnotationMetadata metadata) {
+			return metadata.hasAnnotatedMethods("org.springframework.context.annotation.Bean")
+					? new String[] { Selected.class.getName() } : new String[0];
+		}
+
+	}
+
+	public static class ConditionalSelector implements ImportSelector {
+
+		@Override
+		public String[] selectImports(AnnotationMetadata metadata) {
+			return new String[] { ConditionalComponent.class.getName() };
+		}
+
+	}
+
+}
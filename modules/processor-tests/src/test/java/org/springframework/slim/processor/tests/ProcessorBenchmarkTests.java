@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.slim.processor.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.lang.model.element.Modifier;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import org.springframework.cloud.function.compiler.java.CompilationResult;
+import org.springframework.cloud.function.compiler.java.DependencyResolver;
+import org.springframework.cloud.function.compiler.java.InputFileDescriptor;
+import org.springframework.core.io.FileUrlResource;
+import org.springframework.slim.processor.infra.CompilerRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Processor build time on a synthetic project with a lot of scanned components. Run
+ * with <code>-Dbenchmark=true</code>.
+ *
+ * @author Dave Syer
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ProcessorBenchmarkTests {
+
+	private static final ClassName CONFIGURATION = ClassName
+			.get("org.springframework.context.annotation", "Configuration");
+
+	private static final ClassName COMPONENT_SCAN = ClassName
+			.get("org.springframework.context.annotation", "ComponentScan");
+
+	private static final int COMPONENTS_PER_PACKAGE = 50;
+
+	private static final Log logger = LogFactory.getLog(ProcessorBenchmarkTests.class);
+
+	@Test
+	public void scannedComponents() {
+		List<File> dependencies = getSpringDependencies();
+		// Warm up the compiler
+		compile(500, dependencies);
+		compile(1250, dependencies);
+		// 4 times as many components, and still only one index
+		compile(5000, dependencies);
+	}
+
+	private void compile(int count, List<File> dependencies) {
+		List<InputFileDescriptor> sources = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			int pkg = i / COMPONENTS_PER_PACKAGE;
+			boolean owner = i % COMPONENTS_PER_PACKAGE == 0;
+			sources.add(createType("bench.pkg" + pkg, "Component" + i, owner));
+		}
+		long start = System.currentTimeMillis();
+		CompilationResult result = CompilerRunner.run(sources, Collections.emptyList(),
+				dependencies);
+		long elapsed = System.currentTimeMillis() - start;
+		assertThat(result.containsNewFile("bench/pkg0/Component0Initializer.class")).isTrue();
+		// The time is only for information: it depends too much on the machine to assert
+		logger.info("Benchmark: " + count + " components " + elapsed + "ms");
+		assertThat(result.getCompilationMessages()).extracting("message").contains(
+				"Component scan index built 1 times for " + count + " components");
+	}
+
+	private static InputFileDescriptor createType(String pkg, String classname,
+			boolean scan) {
+		TypeSpec.Builder builder = TypeSpec.classBuilder(classname);
+		builder.addAnnotation(CONFIGURATION);
+		if (scan) {
+			builder.addAnnotation(AnnotationSpec.builder(COMPONENT_SCAN).build());
+		}
+		builder.addModifiers(Modifier.PUBLIC);
+		JavaFile file = JavaFile.builder(pkg, builder.build()).build();
+		StringBuilder sb = new StringBuilder();
+		try {
+			file.writeTo(sb);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Unable to write out source file: " + classname,
+					e);
+		}
+		return new InputFileDescriptor(pkg + "." + classname, sb.toString());
+	}
+
+	private List<File> getSpringDependencies() {
+		try {
+			File f = new File("pom.xml");
+			DependencyResolver engine = DependencyResolver.instance();
+			List<Dependency> dependencies = engine
+					.dependencies(new FileUrlResource(f.toURI().toURL()));
+			return dependencies.stream().map(d -> engine.resolve(d))
+					.collect(Collectors.toList());
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+}
@@ -18,7 +18,12 @@ package org.springframework.slim.processor.tests;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -26,10 +31,13 @@ import java.util.Properties;
 import java.util.stream.Collectors;
 
 import javax.lang.model.element.Modifier;
+import javax.tools.JavaFileObject;
 
 import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.TypeSpec;
 import com.squareup.javapoet.TypeSpec.Builder;
 import org.eclipse.aether.artifact.Artifact;
@@ -38,13 +46,22 @@ import org.eclipse.aether.graph.Dependency;
 import org.junit.jupiter.api.Test;
 
 import org.springframework.cloud.function.compiler.java.CompilationMessage;
+import org.springframework.cloud.function.compiler.java.CompilationOptions;
 import org.springframework.cloud.function.compiler.java.CompilationResult;
 import org.springframework.cloud.function.compiler.java.DependencyResolver;
+import org.springframework.cloud.function.compiler.java.InMemoryJavaFileObject;
 import org.springframework.cloud.function.compiler.java.InputFileDescriptor;
 import org.springframework.core.io.FileUrlResource;
+import org.springframework.init.func.BeanGraph;
+import org.springframework.slim.processor.condition.BeanConfiguration;
+import org.springframework.slim.processor.condition.ClassConfiguration;
+import org.springframework.slim.processor.condition.PropertyConfiguration;
+import org.springframework.slim.processor.graph.GraphConfiguration;
 import org.springframework.slim.processor.infra.CompilerRunner;
+import org.springframework.slim.processor.lazy.EagerConfiguration;
 import org.springframework.slim.processor.nested.NestedConfiguration;
 import org.springframework.slim.processor.nested.NestedInterface;
+import org.springframework.slim.processor.selector.SelectorConfiguration;
 import org.springframework.util.ClassUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -102,10 +119,176 @@ public class SimpleProcessorTests {
 				.getGeneratedFileContents("META-INF/slim-configuration-processor.properties");
 		p.load(new ByteArrayInputStream(processorStateProperties.getBytes()));
 		assertThat(p.get("import.ConfigClass")).isEqualTo("ConfigClass2");
+		// Fingerprint covers the import closure, so it changes with the imported type
+		assertThat(p.get("fingerprint.ConfigClass")).isNotNull();
+		// ConfigClass2 imports nothing so it is written by the isolating processor, but
+		// still has a fingerprint
+		assertThat(p.get("fingerprint.ConfigClass2")).isNotNull();
+		Properties index = new Properties();
+		index.load(new ByteArrayInputStream(cr.getGeneratedFileContents("META-INF/spring-init.index").getBytes()));
+		assertThat(index.get("ConfigClass")).isEqualTo("ConfigClassInitializer");
+		assertThat(index.get("ConfigClass2")).isEqualTo("ConfigClass2Initializer");
+		// No ordering constraints, so alphabetical
+		assertThat(index.get("ConfigClass#ordinal")).isEqualTo("0");
+		assertThat(index.get("ConfigClass2#ordinal")).isEqualTo("1");
 		cr.printGeneratedSources(System.out);
-		// ... call compiler again for just the one file ...
-		// ... check the state is loaded successfully
-		// ... check the result is the same
+		// Build again with the output of the first build
+		List<File> dependencies = new ArrayList<>(getSpringDependencies());
+		dependencies.add(writeClasses(cr));
+		List<InputFileDescriptor> state = Collections.singletonList(
+				new InputFileDescriptor("META-INF/slim-configuration-processor.properties", processorStateProperties));
+		CompilationResult next = CompilerRunner.run(inputs, state, dependencies);
+		assertContainsMessage(next, "Skipping unchanged Initializer ConfigClassInitializer");
+		assertThat(next.containsNewFile("ConfigClassInitializer.java")).isFalse();
+		// The isolating processor always writes its initializers
+		assertThat(next.containsNewFile("ConfigClass2Initializer.java")).isTrue();
+		// ... and again with a change in the input
+		inputs.clear();
+		inputs.add(createType("ConfigClass2", true));
+		inputs.add(source(TypeSpec.classBuilder("ConfigClass").addAnnotation(CONFIGURATION)
+				.addModifiers(Modifier.PUBLIC)
+				.addAnnotation(AnnotationSpec.builder(IMPORT).addMember("value", "$T.class",
+						ClassName.get("", "ConfigClass2")).build())
+				.addMethod(MethodSpec.methodBuilder("foo").addAnnotation(BEAN).addModifiers(Modifier.PUBLIC)
+						.returns(String.class).addStatement("return $S", "foo").build())
+				.build()));
+		next = CompilerRunner.run(inputs, state, dependencies);
+		assertContainsMessage(next, "Writing Initializer ConfigClassInitializer");
+		assertThat(next.getGeneratedFileContents("ConfigClassInitializer.java")).contains("config.get().foo()");
+	}
+
+	@Test
+	public void incrementalBuildWithBeanTypeChange() throws IOException {
+		Collection<InputFileDescriptor> inputs = new ArrayList<>();
+		TypeSpec config = TypeSpec.classBuilder("ConfigClass").addAnnotation(CONFIGURATION)
+				.addModifiers(Modifier.PUBLIC)
+				.addAnnotation(AnnotationSpec.builder(IMPORT).addMember("value", "$T.class",
+						ClassName.get("", "ConfigClass2")).build())
+				.addMethod(MethodSpec.methodBuilder("foo").addAnnotation(BEAN).addModifiers(Modifier.PUBLIC)
+						.returns(ClassName.get("", "Foo")).addStatement("return new Foo()").build())
+				.build();
+		inputs.add(createType("ConfigClass2", true));
+		inputs.add(source(TypeSpec.classBuilder("Foo").addModifiers(Modifier.PUBLIC).build()));
+		inputs.add(source(config));
+		CompilationResult cr = CompilerRunner.run(inputs, Collections.emptyList(), getSpringDependencies());
+		assertContainsMessage(cr, "Writing Initializer ConfigClassInitializer");
+		List<File> dependencies = new ArrayList<>(getSpringDependencies());
+		dependencies.add(writeClasses(cr));
+		List<InputFileDescriptor> state = Collections.singletonList(new InputFileDescriptor(
+				"META-INF/slim-configuration-processor.properties",
+				cr.getGeneratedFileContents("META-INF/slim-configuration-processor.properties")));
+		// The configuration class is the same, but the bean type is not
+		inputs.clear();
+		inputs.add(createType("ConfigClass2", true));
+		inputs.add(source(TypeSpec.classBuilder("Foo").addModifiers(Modifier.PUBLIC)
+				.addSuperinterface(Runnable.class).addMethod(MethodSpec.methodBuilder("run")
+						.addAnnotation(Override.class).addModifiers(Modifier.PUBLIC).build())
+				.build()));
+		inputs.add(source(config));
+		CompilationResult next = CompilerRunner.run(inputs, state, dependencies);
+		assertContainsMessage(next, "Writing Initializer ConfigClassInitializer");
+	}
+
+	@Test
+	public void nonLatinIndex() throws IOException {
+		CompilationResult cr = CompilerRunner.run(createType("Config\u8a2d\u5b9a", true), getSpringDependencies());
+		Properties index = new Properties();
+		index.load(new ByteArrayInputStream(cr.getGeneratedFileContents("META-INF/spring-init.index").getBytes()));
+		assertThat(index.get("Config\u8a2d\u5b9a")).isEqualTo("Config\u8a2d\u5b9aInitializer");
+	}
+
+	@Test
+	public void configurationSubclass() throws IOException {
+		Collection<InputFileDescriptor> inputs = new ArrayList<>();
+		inputs.add(source(TypeSpec.classBuilder("BaseConfigClass").addModifiers(Modifier.PUBLIC)
+				.addMethod(MethodSpec.methodBuilder("foo").addAnnotation(BEAN).addModifiers(Modifier.PUBLIC)
+						.returns(String.class).addStatement("return $S", "foo").build())
+				.build()));
+		inputs.add(source(TypeSpec.classBuilder("SubConfigClass").addAnnotation(CONFIGURATION)
+				.addModifiers(Modifier.PUBLIC).superclass(ClassName.get("", "BaseConfigClass")).build()));
+		// Not isolated (the initializer depends on the superclass), so the aggregating
+		// processor writes it
+		CompilationResult cr = CompilerRunner.run(inputs, Collections.emptyList(), getSpringDependencies());
+		assertContainsMessage(cr, "Writing Initializer SubConfigClassInitializer");
+		assertThat(cr.getGeneratedFileContents("SubConfigClassInitializer.java"))
+				.contains("() -> config.get().foo()");
+		Properties p = new Properties();
+		p.load(new ByteArrayInputStream(
+				cr.getGeneratedFileContents("META-INF/slim-configuration-processor.properties").getBytes()));
+		assertThat(p.get("fingerprint.SubConfigClass")).isNotNull();
+	}
+
+	@Test
+	public void largeConfigurationClass() {
+		Builder builder = TypeSpec.classBuilder("LargeConfigClass").addAnnotation(CONFIGURATION)
+				.addModifiers(Modifier.PUBLIC);
+		for (int i = 0; i < 250; i++) {
+			builder.addMethod(MethodSpec.methodBuilder("bean" + i).addAnnotation(BEAN).addModifiers(Modifier.PUBLIC)
+					.returns(String.class).addStatement("return $S", "bean" + i).build());
+		}
+		StringBuilder source = new StringBuilder();
+		try {
+			JavaFile.builder("", builder.build()).build().writeTo(source);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Unable to write out source file", e);
+		}
+		CompilationResult cr = CompilerRunner.run(new InputFileDescriptor("LargeConfigClass", source.toString()),
+				getSpringDependencies());
+		assertContainsMessage(cr, "Split 251 registrations (251 statements) in LargeConfigClassInitializer into 3 methods of [100, 100, 51] statements (maximum 100 per method)");
+		String generated = cr.getGeneratedFileContents("LargeConfigClassInitializer.java");
+		assertThat(generated).contains("private void registerBeans2(GenericApplicationContext context,");
+		// The configuration bean is resolved once and shared by the helper methods
+		assertThat(generated).contains("registerBeans2(context, config);");
+		assertThat(generated).doesNotContain("registerBeans3");
+	}
+
+	@Test
+	public void largeConditionalConfigurationClass() {
+		Builder builder = TypeSpec.classBuilder("ConditionalConfigClass").addAnnotation(CONFIGURATION)
+				.addModifiers(Modifier.PUBLIC);
+		for (int i = 0; i < 60; i++) {
+			builder.addMethod(MethodSpec.methodBuilder("bean" + i).addAnnotation(BEAN)
+					.addAnnotation(ClassName.get("org.springframework.boot.autoconfigure.condition",
+							"ConditionalOnMissingBean"))
+					.addModifiers(Modifier.PUBLIC).returns(String.class).addStatement("return $S", "bean" + i)
+					.build());
+		}
+		CompilationResult cr = CompilerRunner.run(Collections.singletonList(source(builder.build())),
+				Collections.emptyList(), getSpringDependencies());
+		assertThat(cr.wasSuccessful()).isTrue();
+		// A conditional bean is 3 statements (and the first one looks up the conditions)
+		assertContainsMessage(cr, "Split 61 registrations (182 statements) in ConditionalConfigClassInitializer"
+				+ " into 2 methods of [98, 84] statements (maximum 100 per method)");
+		String generated = cr.getGeneratedFileContents("ConditionalConfigClassInitializer.java");
+		// Each method has to look up the ConditionService for itself
+		assertThat(generated).contains("private void registerBeans1(GenericApplicationContext context,");
+		assertThat(generated.split("ConditionService conditions = ")).hasSize(3);
+	}
+
+	@Test
+	public void supplierDispatch() {
+		Builder builder = TypeSpec.classBuilder("DispatchConfigClass").addAnnotation(CONFIGURATION)
+				.addModifiers(Modifier.PUBLIC);
+		for (int i = 0; i < 150; i++) {
+			builder.addMethod(MethodSpec.methodBuilder("bean" + i).addAnnotation(BEAN).addModifiers(Modifier.PUBLIC)
+					.returns(String.class).addStatement("return $S", "bean" + i).build());
+		}
+		CompilationResult cr = CompilerRunner.run(Collections.singletonList(source(builder.build())),
+				Collections.emptyList(), getSpringDependencies(),
+				new CompilationOptions().processorOption("spring.init.suppliers", "dispatch"));
+		assertThat(cr.wasSuccessful()).isTrue();
+		String generated = cr.getGeneratedFileContents("DispatchConfigClassInitializer.java");
+		assertThat(generated).contains("private static class BeanSupplier<T> implements Supplier<T>");
+		assertThat(generated).contains("new BeanSupplier<>(context, config, 150)");
+		assertThat(generated).doesNotContain("() -> ");
+		// More than 50 beans so the switch is split into chunks
+		assertThat(generated).contains("switch (this.index / 50)");
+		assertThat(generated).contains("case 3: return get3();");
+		assertThat(generated).contains("private T get3() {");
+		assertThat(generated).doesNotContain("get4()");
+		// The last chunk has the rest (the configuration itself is index 0)
+		assertThat(generated).contains("case 150:\n          return (T) config.get().bean149();");
 	}
 
 	@Test
@@ -159,6 +342,193 @@ public class SimpleProcessorTests {
 		// System.err.println(generated);
 		assertThat(generated).contains("private static final boolean enabled;");
 		assertThat(generated).contains("enabled =");
+		generated = cr.getGeneratedFileContents(ClassUtils.classPackageAsResourcePath(NestedConfiguration.class)
+				+ "/InsideNestedConfiguration_InsideInsideNestedConfigurationInitializer.java");
+		// Configuration bean is resolved by name, once, for all its bean methods
+		assertThat(generated).contains("new BeanHolder<>(context.getBeanFactory(), "
+				+ "\"org.springframework.slim.processor.nested.NestedConfiguration$InsideNestedConfiguration$InsideInsideNestedConfiguration\")");
+		assertThat(generated).contains("() -> config.get().foo()");
+		// Registration guard does not need to scan the bean definitions
+		assertThat(generated).contains("if (RegistrationIndex.get(context).register("
+				+ "NestedConfiguration.InsideNestedConfiguration.InsideInsideNestedConfiguration.class))");
+	}
+
+	@Test
+	public void propertyCondition() {
+		CompilationResult cr = CompilerRunner.run(
+				new InputFileDescriptor(
+						new File("src/test/java/" + ClassUtils.classPackageAsResourcePath(PropertyConfiguration.class)
+								+ "/PropertyConfiguration.java"),
+						"PropertyConfiguration",
+						ClassUtils.getPackageName(PropertyConfiguration.class) + ".PropertyConfiguration"),
+				getSpringDependencies());
+		String generated = cr.getGeneratedFileContents(ClassUtils.classPackageAsResourcePath(PropertyConfiguration.class)
+				+ "/PropertyConfigurationInitializer.java");
+		assertThat(generated)
+				.contains("!\"false\".equalsIgnoreCase(context.getEnvironment().getProperty(\"app.enabled\", \"true\"))");
+		assertThat(generated).contains("\"bar\".equalsIgnoreCase(context.getEnvironment().getProperty(\"app.foo\"))");
+		assertThat(generated).doesNotContain("ConditionService");
+	}
+
+	@Test
+	public void classCondition() {
+		CompilationResult cr = CompilerRunner.run(
+				new InputFileDescriptor(
+						new File("src/test/java/" + ClassUtils.classPackageAsResourcePath(ClassConfiguration.class)
+								+ "/ClassConfiguration.java"),
+						"ClassConfiguration", ClassUtils.getPackageName(ClassConfiguration.class) + ".ClassConfiguration"),
+				getSpringDependencies());
+		String generated = cr.getGeneratedFileContents(
+				ClassUtils.classPackageAsResourcePath(ClassConfiguration.class) + "/ClassConfigurationInitializer.java");
+		assertThat(generated).contains("ClassPresence.isPresent(\"com.example.Bar\")");
+		assertThat(cr.wasSuccessful()).isTrue();
+		assertThat(generated).contains("private static final boolean fooEnabled;");
+		assertThat(generated).contains("!ClassPresence.isPresent(\"com.example.Spam\")");
+		// Only the first overload is registered
+		assertThat(generated).doesNotContain("fooEnabled1");
+		assertThat(generated).doesNotContain("ClassPresence.isPresent(\"com.example.Baz\")");
+		assertThat(generated).doesNotContain("ConditionService");
+	}
+
+	@Test
+	public void conditionMetadata() {
+		CompilationResult cr = CompilerRunner.run(
+				new InputFileDescriptor(
+						new File("src/test/java/" + ClassUtils.classPackageAsResourcePath(BeanConfiguration.class)
+								+ "/BeanConfiguration.java"),
+						"BeanConfiguration", ClassUtils.getPackageName(BeanConfiguration.class) + ".BeanConfiguration"),
+				getSpringDependencies());
+		String generated = cr.getGeneratedFileContents(
+				ClassUtils.classPackageAsResourcePath(BeanConfiguration.class) + "/BeanConfigurationInitializer.java");
+		assertThat(generated).contains("implements ApplicationContextInitializer<GenericApplicationContext>, "
+				+ "ConditionMetadataSource");
+		assertThat(generated).contains("GeneratedMetadata.annotation(ConditionalOnBean.class, \"name\", "
+				+ "new String[] { \"bar\" })");
+		assertThat(generated).contains("case \"java.lang.String\":");
+		assertThat(generated).contains("GeneratedMetadata.annotation(ConditionalOnMissingBean.class)");
+		// The property condition is compiled, but the import registrars only have the
+		// ConditionService to ask
+		assertThat(generated).contains("GeneratedMetadata.annotation(ConditionalOnProperty.class, \"value\", "
+				+ "new String[] { \"app.enabled\" })");
+	}
+
+	@Test
+	public void beanGraph() throws IOException {
+		CompilationResult cr = CompilerRunner.run(
+				new InputFileDescriptor(
+						new File("src/test/java/" + ClassUtils.classPackageAsResourcePath(GraphConfiguration.class)
+								+ "/GraphConfiguration.java"),
+						"GraphConfiguration", ClassUtils.getPackageName(GraphConfiguration.class) + ".GraphConfiguration"),
+				getSpringDependencies());
+		Properties graph = new Properties();
+		graph.load(new ByteArrayInputStream(cr.getGeneratedFileContents("META-INF/spring-init/graph/"
+				+ ClassUtils.getPackageName(GraphConfiguration.class) + ".GraphConfigurationInitializer.properties")
+				.getBytes()));
+		assertThat(graph.get(GraphConfiguration.class.getName())).isEqualTo(GraphConfiguration.class.getName());
+		assertThat(graph.get(GraphConfiguration.class.getName() + "#dependencies")).isEqualTo("");
+		assertThat(graph.get("foo")).isEqualTo("java.lang.String");
+		// Instance bean methods need the configuration bean
+		assertThat(graph.get("foo#dependencies")).isEqualTo("bean:" + GraphConfiguration.class.getName());
+		assertThat(graph.get("bar")).isEqualTo("java.lang.StringBuilder");
+		assertThat(graph.get("bar#dependencies"))
+				.isEqualTo("bean:java.lang.String,provider:java.lang.Integer,collection:java.lang.Runnable");
+	}
+
+	@Test
+	public void beanGraphLoading() throws IOException {
+		String qualifier = "a,b:c=d%20\u00e9\u8a2d";
+		TypeSpec first = TypeSpec.classBuilder("FirstGraphConfig").addAnnotation(CONFIGURATION)
+				.addModifiers(Modifier.PUBLIC)
+				.addMethod(MethodSpec.methodBuilder("foo").addAnnotation(BEAN).addModifiers(Modifier.PUBLIC)
+						.returns(String.class)
+						.addParameter(ParameterSpec.builder(String.class, "bar")
+								.addAnnotation(AnnotationSpec.builder(QUALIFIER).addMember("value", "$S", qualifier)
+										.build())
+								.build())
+						.addStatement("return bar").build())
+				.addMethod(MethodSpec.methodBuilder("spam").addAnnotation(BEAN).addModifiers(Modifier.PUBLIC)
+						.returns(Integer.class).addStatement("return 1").build())
+				.build();
+		TypeSpec second = TypeSpec.classBuilder("SecondGraphConfig").addAnnotation(CONFIGURATION)
+				.addModifiers(Modifier.PUBLIC)
+				.addMethod(MethodSpec.methodBuilder("foo").addAnnotation(BEAN).addModifiers(Modifier.PUBLIC)
+						.returns(StringBuilder.class).addStatement("return new StringBuilder()").build())
+				.build();
+		CompilationResult cr = CompilerRunner.run(Arrays.asList(source(first), source(second)),
+				Collections.emptyList(), getSpringDependencies());
+		ClassLoader classLoader = new URLClassLoader(new URL[] { writeClasses(cr).toURI().toURL() },
+				getClass().getClassLoader());
+		BeanGraph.Node foo = BeanGraph.load(classLoader, "FirstGraphConfigInitializer").stream()
+				.filter(node -> node.getName().equals("foo")).findFirst().get();
+		assertThat(foo.getType()).isEqualTo("java.lang.String");
+		BeanGraph.Dependency dependency = foo.getDependencies().stream().filter(item -> item.getQualifier() != null)
+				.findFirst().get();
+		assertThat(dependency.getType()).isEqualTo("java.lang.String");
+		assertThat(dependency.getQualifier()).isEqualTo(qualifier);
+		// The same bean name in two initializers: the type and dependencies are unknown
+		BeanGraph graph = BeanGraph.get(classLoader);
+		assertThat(graph.getNode("foo").getType()).isNull();
+		assertThat(graph.getNode("foo").isResolved()).isFalse();
+		assertThat(graph.getNode("spam").getType()).isEqualTo("java.lang.Integer");
+		assertThat(graph.getNode("spam").isResolved()).isTrue();
+	}
+
+	@Test
+	public void importSelectors() {
+		String pkg = ClassUtils.getPackageName(SelectorConfiguration.class);
+		String selectors = Arrays
+				.asList("SimpleSelector", "DeferredSelector", "AwareSelector", "FailingSelector", "MethodsSelector",
+						"ConditionalSelector")
+				.stream().map(name -> SelectorConfiguration.class.getName() + "$" + name)
+				.collect(Collectors.joining(","));
+		CompilationResult cr = CompilerRunner.run(
+				Collections.singletonList(new InputFileDescriptor(
+						new File("src/test/java/" + ClassUtils.classPackageAsResourcePath(SelectorConfiguration.class)
+								+ "/SelectorConfiguration.java"),
+						"SelectorConfiguration", SelectorConfiguration.class.getName())),
+				Collections.emptyList(), getSpringDependencies(),
+				new CompilationOptions().processorOption("spring.init.selectors", selectors));
+		String path = ClassUtils.classPackageAsResourcePath(SelectorConfiguration.class) + "/SelectorConfiguration_";
+		// Allowlisted and only needs the annotations: the selected type is imported directly
+		assertThat(cr.getGeneratedFileContents(path + "SimpleConfigurationInitializer.java"))
+				.contains("add(SelectorConfiguration.SimpleConfiguration.class, \"" + pkg
+						+ ".SelectorConfiguration$Selected\")");
+		// The rest run at runtime as usual
+		assertThat(cr.getGeneratedFileContents(path + "DeferredConfigurationInitializer.java"))
+				.contains("SelectorConfiguration.DeferredSelector\")");
+		assertContainsMessage(cr,
+				"Import selector cannot run at build time: " + pkg + ".SelectorConfiguration$DeferredSelector");
+		assertThat(cr.getGeneratedFileContents(path + "AwareConfigurationInitializer.java"))
+				.contains("SelectorConfiguration.AwareSelector\")");
+		assertContainsMessage(cr,
+				"Import selector cannot run at build time: " + pkg + ".SelectorConfiguration$AwareSelector");
+		assertThat(cr.getGeneratedFileContents(path + "FailingConfigurationInitializer.java"))
+				.contains("SelectorConfiguration.FailingSelector\")");
+		assertContainsMessage(cr, "Import selector failed at build time: " + pkg
+				+ ".SelectorConfiguration$FailingSelector (java.lang.IllegalStateException: Planned)");
+		assertThat(cr.getGeneratedFileContents(path + "MethodsConfigurationInitializer.java"))
+				.contains("SelectorConfiguration.MethodsSelector\")");
+		assertContainsMessage(cr,
+				"Import selector needs method metadata: " + pkg + ".SelectorConfiguration$MethodsSelector");
+		// A conditional type has to go through the selector so its conditions are checked
+		assertThat(cr.getGeneratedFileContents(path + "ConditionalConfigurationInitializer.java"))
+				.contains("SelectorConfiguration.ConditionalSelector\")")
+				.doesNotContain("ConditionalComponent");
+	}
+
+	@Test
+	public void eagerBeans() {
+		CompilationResult cr = CompilerRunner.run(
+				new InputFileDescriptor(
+						new File("src/test/java/" + ClassUtils.classPackageAsResourcePath(EagerConfiguration.class)
+								+ "/EagerConfiguration.java"),
+						"EagerConfiguration", ClassUtils.getPackageName(EagerConfiguration.class) + ".EagerConfiguration"),
+				getSpringDependencies());
+		String generated = cr.getGeneratedFileContents(
+				ClassUtils.classPackageAsResourcePath(EagerConfiguration.class) + "/EagerConfigurationInitializer.java");
+		// Listeners stay eager with lazy initialization
+		assertThat(generated).contains("() -> config.get().listener(), def -> def.setLazyInit(false));");
+		assertThat(generated).contains("() -> config.get().foo());");
 	}
 
 	@Test
@@ -228,6 +598,11 @@ public class SimpleProcessorTests {
 	public static final ClassName CONFIGURATION = ClassName.get("org.springframework.context.annotation",
 			"Configuration");
 
+	public static final ClassName QUALIFIER = ClassName.get("org.springframework.beans.factory.annotation",
+			"Qualifier");
+
+	public static final ClassName BEAN = ClassName.get("org.springframework.context.annotation", "Bean");
+
 	private static TypeSpec.Builder importAnnotation(TypeSpec.Builder type, String... fullyQualifiedImports) {
 		ClassName[] array = new ClassName[fullyQualifiedImports.length];
 		for (int i = 0; i < fullyQualifiedImports.length; i++) {
@@ -250,6 +625,34 @@ public class SimpleProcessorTests {
 		return builder.toString();
 	}
 
+	/**
+	 * Write the compiled classes and resources to a directory, like the output of a real
+	 * build.
+	 */
+	private static File writeClasses(CompilationResult cr) throws IOException {
+		File dir = Files.createTempDirectory("classes").toFile();
+		for (InMemoryJavaFileObject file : cr.getGeneratedFiles()) {
+			if (file.getKind() != JavaFileObject.Kind.SOURCE) {
+				Path path = new File(dir, file.getName()).toPath();
+				Files.createDirectories(path.getParent());
+				Files.write(path, file.getBytes());
+			}
+		}
+		dir.deleteOnExit();
+		return dir;
+	}
+
+	private static InputFileDescriptor source(TypeSpec type) {
+		StringBuilder source = new StringBuilder();
+		try {
+			JavaFile.builder("", type).build().writeTo(source);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Unable to write out source file: " + type.name, e);
+		}
+		return new InputFileDescriptor(type.name, source.toString());
+	}
+
 	private static InputFileDescriptor createType(String classname, boolean markAtConfiguration, String... imports) {
 		Builder builder = TypeSpec.classBuilder(classname);
 		if (markAtConfiguration) {
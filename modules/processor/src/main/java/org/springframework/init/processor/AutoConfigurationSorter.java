@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.processor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.lang.model.element.TypeElement;
+
+import org.springframework.init.func.AutoConfigurationOrdering;
+
+/**
+ * Build time version of the auto-configuration sorter in Spring Boot. It reads the
+ * annotations from the compiler model, so the result can be written to the index and
+ * used at runtime without reading any class metadata. The sorting itself is shared with
+ * the runtime (see {@link AutoConfigurationOrdering}).
+ *
+ * @author Dave Syer
+ *
+ */
+public class AutoConfigurationSorter extends AutoConfigurationOrdering {
+
+	private ElementUtils utils;
+
+	private Map<String, Integer> orders = new HashMap<>();
+
+	private Map<String, Set<String>> before = new HashMap<>();
+
+	private Map<String, Set<String>> after = new HashMap<>();
+
+	public AutoConfigurationSorter(ElementUtils utils) {
+		this.utils = utils;
+	}
+
+	@Override
+	public int getOrder(String name) {
+		return orders.computeIfAbsent(name, key -> {
+			TypeElement type = getType(key);
+			Object value = type == null ? null
+					: utils.getAnnotationValue(type,
+							SpringClassNames.AUTO_CONFIGURE_ORDER.toString(), "value");
+			return value instanceof Integer ? (Integer) value : DEFAULT_ORDER;
+		});
+	}
+
+	@Override
+	public Set<String> getBefore(String name) {
+		return before.computeIfAbsent(name,
+				key -> getNames(key, SpringClassNames.AUTO_CONFIGURE_BEFORE.toString()));
+	}
+
+	@Override
+	public Set<String> getAfter(String name) {
+		return after.computeIfAbsent(name,
+				key -> getNames(key, SpringClassNames.AUTO_CONFIGURE_AFTER.toString()));
+	}
+
+	private Set<String> getNames(String name, String annotation) {
+		Set<String> result = new TreeSet<>();
+		TypeElement type = getType(name);
+		if (type != null) {
+			for (TypeElement value : utils.getTypesFromAnnotation(type, annotation,
+					"value")) {
+				result.add(utils.getBinaryName(value));
+			}
+			result.addAll(utils.getStringsFromAnnotation(type, annotation, "name"));
+		}
+		return result;
+	}
+
+	private TypeElement getType(String name) {
+		return utils.asTypeElement(name.replace("$", "."));
+	}
+
+}
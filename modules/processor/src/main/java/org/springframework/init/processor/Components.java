@@ -15,6 +15,7 @@
  */
 package org.springframework.init.processor;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -33,12 +34,16 @@ public class Components {
 	private Set<TypeElement> components = new LinkedHashSet<>();
 	private Set<TypeElement> scans = new LinkedHashSet<>();
 	private Map<String, Set<TypeElement>> packages = new LinkedHashMap<>();
+	// Scan owner to components, built once (lazily) and reset when a type is added
+	private Map<TypeElement, Set<TypeElement>> index;
+	private int builds;
 
 	public Components(ElementUtils utils) {
 		this.utils = utils;
 	}
 
 	public void addComponent(TypeElement type) {
+		this.index = null;
 		if (utils.hasAnnotation(type, SpringClassNames.COMPONENT.toString())) {
 			this.components.add(type);
 			String pkg = utils.getPackage(type);
@@ -62,18 +67,48 @@ public class Components {
 	}
 
 	public Map<TypeElement, Set<TypeElement>> getComponents() {
+		if (this.index == null) {
+			this.index = index();
+		}
+		return this.index;
+	}
+
+	/**
+	 * The components picked up by the component scan on the owner, or null if it
+	 * doesn't have one.
+	 */
+	public Set<TypeElement> getComponents(TypeElement owner) {
+		return getComponents().get(owner);
+	}
+
+	/**
+	 * The number of times the scan index was built (once per round if all the types
+	 * are added before the first query).
+	 */
+	public int getIndexBuilds() {
+		return this.builds;
+	}
+
+	private Map<TypeElement, Set<TypeElement>> index() {
+		this.builds++;
 		Map<TypeElement, Set<TypeElement>> result = new LinkedHashMap<>();
+		// Owners scanning the same base packages share the same set
+		Map<Set<String>, Set<TypeElement>> scanned = new LinkedHashMap<>();
 		for (TypeElement owner : scans) {
-			Set<TypeElement> computed = result.computeIfAbsent(owner,
-					key -> new LinkedHashSet<>());
-			for (String pkg : getBasePackage(owner)) {
-				Set<TypeElement> added = packages.get(pkg);
-				if (added != null) {
-					computed.addAll(added);
-				}
-			}
+			Set<TypeElement> computed = scanned.computeIfAbsent(getBasePackage(owner),
+					bases -> {
+						Set<TypeElement> set = new LinkedHashSet<>();
+						for (String pkg : bases) {
+							Set<TypeElement> added = packages.get(pkg);
+							if (added != null) {
+								set.addAll(added);
+							}
+						}
+						return Collections.unmodifiableSet(set);
+					});
+			result.put(owner, computed);
 		}
-		return result;
+		return Collections.unmodifiableMap(result);
 	}
 
 	private Set<String> getBasePackage(TypeElement owner) {
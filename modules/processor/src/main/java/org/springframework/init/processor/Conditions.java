@@ -0,0 +1,296 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.processor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
+
+/**
+ * Conditions that can be compiled into plain Java in the generated initializers, instead
+ * of going through the <code>ConditionService</code> at runtime (which has to read the
+ * class metadata and instantiate the <code>Condition</code>). Only conditions declared
+ * directly on the type or bean method are compiled. Anything else (e.g. a custom
+ * composed annotation) is left to the <code>ConditionService</code>.
+ *
+ * @author Dave Syer
+ *
+ */
+public class Conditions {
+
+	private static final Set<String> COMPILED = new HashSet<>();
+
+	static {
+		COMPILED.add(SpringClassNames.CONDITIONAL_ON_PROPERTY.toString());
+		COMPILED.add(SpringClassNames.CONDITIONAL_ON_CLASS.toString());
+		COMPILED.add(SpringClassNames.CONDITIONAL_ON_MISSING_CLASS.toString());
+	}
+
+	private ElementUtils utils;
+
+	public Conditions(ElementUtils utils) {
+		this.utils = utils;
+	}
+
+	/**
+	 * Whether the element has any conditions that have to be evaluated at runtime by
+	 * the <code>ConditionService</code>.
+	 */
+	public boolean isConditional(Element element) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			String name = annotation.getAnnotationType().toString();
+			if (COMPILED.contains(name)) {
+				if (name.equals(SpringClassNames.CONDITIONAL_ON_PROPERTY.toString())
+						&& getPropertyCondition(element) == null) {
+					// No property names, so let Spring Boot complain about it
+					return true;
+				}
+				continue;
+			}
+			if (name.equals(SpringClassNames.CONDITIONAL.toString()) || utils
+					.hasAnnotation(annotation.getAnnotationType().asElement(), SpringClassNames.CONDITIONAL.toString())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A boolean expression for the <code>@ConditionalOnProperty</code> on the element,
+	 * in terms of a <code>GenericApplicationContext</code> called "context", or null if
+	 * there isn't one. Follows the same rules as the condition in Spring Boot: a
+	 * property matches if it is equal to the <code>havingValue</code> (ignoring case),
+	 * or if there is no <code>havingValue</code> and it is not "false".
+	 */
+	public CodeBlock getPropertyCondition(Element element) {
+		AnnotationMirror annotation = getAnnotation(element, SpringClassNames.CONDITIONAL_ON_PROPERTY.toString());
+		if (annotation == null) {
+			return null;
+		}
+		String annotationType = SpringClassNames.CONDITIONAL_ON_PROPERTY.toString();
+		String prefix = getString(element, annotationType, "prefix").trim();
+		if (prefix.length() > 0 && !prefix.endsWith(".")) {
+			prefix = prefix + ".";
+		}
+		List<String> names = utils.getStringsFromAnnotation(annotation, "value");
+		if (names.isEmpty()) {
+			names = utils.getStringsFromAnnotation(annotation, "name");
+		}
+		String havingValue = getString(element, annotationType, "havingValue");
+		boolean matchIfMissing = Boolean.TRUE.equals(utils.getAnnotationValue(element, annotationType,
+				"matchIfMissing"));
+		List<CodeBlock> checks = new ArrayList<>();
+		for (String name : names) {
+			String key = prefix + name;
+			if (havingValue.length() == 0) {
+				checks.add(CodeBlock.of("!$S.equalsIgnoreCase(context.getEnvironment().getProperty($S, $S))", "false",
+						key, String.valueOf(matchIfMissing)));
+			}
+			else if (matchIfMissing) {
+				checks.add(CodeBlock.of("$S.equalsIgnoreCase(context.getEnvironment().getProperty($S, $S))",
+						havingValue, key, havingValue));
+			}
+			else {
+				checks.add(CodeBlock.of("$S.equalsIgnoreCase(context.getEnvironment().getProperty($S))", havingValue,
+						key));
+			}
+		}
+		return checks.isEmpty() ? null : CodeBlock.join(checks, " && ");
+	}
+
+	/**
+	 * A boolean expression for the <code>@ConditionalOnClass</code> and
+	 * <code>@ConditionalOnMissingClass</code> on the element, or null if there aren't
+	 * any. The class names are looked up in the {@link SpringClassNames#CLASS_PRESENCE}
+	 * cache, so each one is only checked once per class loader.
+	 */
+	public CodeBlock getClassCondition(Element element) {
+		List<CodeBlock> checks = new ArrayList<>();
+		AnnotationMirror present = getAnnotation(element, SpringClassNames.CONDITIONAL_ON_CLASS.toString());
+		if (present != null) {
+			for (String name : getClassNames(present, "value")) {
+				checks.add(CodeBlock.of("$T.isPresent($S)", SpringClassNames.CLASS_PRESENCE, name));
+			}
+			for (String name : utils.getStringsFromAnnotation(present, "name")) {
+				checks.add(CodeBlock.of("$T.isPresent($S)", SpringClassNames.CLASS_PRESENCE, name));
+			}
+		}
+		AnnotationMirror missing = getAnnotation(element, SpringClassNames.CONDITIONAL_ON_MISSING_CLASS.toString());
+		if (missing != null) {
+			for (String name : utils.getStringsFromAnnotation(missing, "value")) {
+				checks.add(CodeBlock.of("!$T.isPresent($S)", SpringClassNames.CLASS_PRESENCE, name));
+			}
+		}
+		return checks.isEmpty() ? null : CodeBlock.join(checks, " &&\n");
+	}
+
+	/**
+	 * The conditional annotations on the element, as calls to
+	 * {@link SpringClassNames#GENERATED_METADATA}, optionally leaving out the ones that
+	 * are compiled into the initializer. Returns null if any of them can't be written in
+	 * source code (e.g. it has a nested annotation as an attribute value), so the
+	 * <code>ConditionService</code> has to read the class file instead.
+	 */
+	public List<CodeBlock> getMetadataAnnotations(Element element, boolean compiled) {
+		List<CodeBlock> result = new ArrayList<>();
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			String name = annotation.getAnnotationType().toString();
+			if (!compiled && isCompiled(element, name)) {
+				continue;
+			}
+			TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+			if (!name.equals(SpringClassNames.CONDITIONAL.toString())
+					&& !utils.hasAnnotation(type, SpringClassNames.CONDITIONAL.toString())) {
+				continue;
+			}
+			CodeBlock code = getAnnotation(annotation);
+			if (code == null || !isPublic(type)) {
+				return null;
+			}
+			result.add(code);
+		}
+		return result;
+	}
+
+	private boolean isCompiled(Element element, String name) {
+		if (!COMPILED.contains(name)) {
+			return false;
+		}
+		if (name.equals(SpringClassNames.CONDITIONAL_ON_PROPERTY.toString())) {
+			return getPropertyCondition(element) != null;
+		}
+		return true;
+	}
+
+	private CodeBlock getAnnotation(AnnotationMirror annotation) {
+		List<CodeBlock> args = new ArrayList<>();
+		args.add(CodeBlock.of("$T.class", ClassName.get((TypeElement) annotation.getAnnotationType().asElement())));
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues()
+				.entrySet()) {
+			CodeBlock value = getValue(entry.getKey().getReturnType(), entry.getValue());
+			if (value == null) {
+				return null;
+			}
+			args.add(CodeBlock.of("$S", entry.getKey().getSimpleName()));
+			args.add(value);
+		}
+		return CodeBlock.of("$T.annotation($L)", SpringClassNames.GENERATED_METADATA, CodeBlock.join(args, ", "));
+	}
+
+	private CodeBlock getValue(TypeMirror type, AnnotationValue value) {
+		Object object = value.getValue();
+		if (object instanceof String) {
+			return CodeBlock.of("$S", object);
+		}
+		if (object instanceof Boolean || object instanceof Integer) {
+			return CodeBlock.of("$L", object);
+		}
+		if (object instanceof Long) {
+			return CodeBlock.of("$LL", object);
+		}
+		if (object instanceof TypeMirror) {
+			// Class values are held as names, so they don't have to be present
+			return CodeBlock.of("$S", getClassName((TypeMirror) object));
+		}
+		if (object instanceof VariableElement) {
+			TypeElement enumType = (TypeElement) ((VariableElement) object).getEnclosingElement();
+			return isPublic(enumType)
+					? CodeBlock.of("$T.$L", ClassName.get(enumType), ((VariableElement) object).getSimpleName())
+					: null;
+		}
+		if (object instanceof List && type.getKind() == TypeKind.ARRAY) {
+			TypeMirror component = ((ArrayType) type).getComponentType();
+			TypeName arrayType = utils.erasure(component).toString().equals(Class.class.getName())
+					? ClassName.get(String.class) : TypeName.get(utils.erasure(component));
+			List<CodeBlock> items = new ArrayList<>();
+			@SuppressWarnings("unchecked")
+			List<AnnotationValue> values = (List<AnnotationValue>) object;
+			for (AnnotationValue item : values) {
+				CodeBlock code = getValue(component, item);
+				if (code == null) {
+					return null;
+				}
+				items.add(code);
+			}
+			return CodeBlock.of("new $T[] { $L }", arrayType, CodeBlock.join(items, ", "));
+		}
+		// Nested annotations and rarer primitive types
+		return null;
+	}
+
+	private String getClassName(TypeMirror type) {
+		Element element = utils.asElement(type);
+		// The class might not be on the compile classpath
+		return type.getKind() == TypeKind.DECLARED && element instanceof TypeElement
+				? utils.getBinaryName((TypeElement) element) : String.valueOf(element != null ? element : type);
+	}
+
+	private boolean isPublic(TypeElement type) {
+		for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+			if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private List<String> getClassNames(AnnotationMirror annotation, String attribute) {
+		List<String> names = new ArrayList<>();
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues()
+				.entrySet()) {
+			if (entry.getKey().getSimpleName().toString().equals(attribute)) {
+				@SuppressWarnings("unchecked")
+				List<AnnotationValue> values = (List<AnnotationValue>) entry.getValue().getValue();
+				for (AnnotationValue value : values) {
+					names.add(getClassName((TypeMirror) value.getValue()));
+				}
+			}
+		}
+		return names;
+	}
+
+	private String getString(Element element, String annotation, String attribute) {
+		Object value = utils.getAnnotationValue(element, annotation, attribute);
+		return value == null ? "" : value.toString();
+	}
+
+	private AnnotationMirror getAnnotation(Element element, String type) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			if (annotation.getAnnotationType().toString().equals(type)) {
+				return annotation;
+			}
+		}
+		return null;
+	}
+
+}
@@ -16,6 +16,8 @@
 package org.springframework.init.processor;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -53,6 +55,13 @@ public class ElementUtils {
 	private TypeFinder typeFinder = new TypeFinder();
 	private Elements elements;
 	private Messager messager;
+	// Meta-annotation closure per annotation type, keyed by target annotation name (only
+	// for one round, because the elements are not guaranteed to be the same in the next)
+	private Map<Element, Map<String, Set<AnnotationMirror>>> metaAnnotations = new HashMap<>();
+	private Map<Element, String> annotationNames = new HashMap<>();
+	private Set<String> resolvedTypes = new HashSet<>();
+	private int indexHits;
+	private int indexMisses;
 
 	public ElementUtils(Types types, Elements elements, Messager messager) {
 		this.types = types;
@@ -65,11 +74,105 @@ public class ElementUtils {
 	}
 
 	public Set<AnnotationMirror> getAnnotations(Element element, String type) {
-		Set<AnnotationMirror> set = new HashSet<>();
-		getAnnotations(element, type, set, new HashSet<>());
+		Set<AnnotationMirror> set = new LinkedHashSet<>();
+		if (element != null) {
+			for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+				Element annotationType = annotation.getAnnotationType().asElement();
+				String annotationTypename = getAnnotationName(annotationType);
+				if (isIgnored(annotationTypename)) {
+					continue;
+				}
+				if (type.equals(annotationTypename)) {
+					set.add(annotation);
+					continue;
+				}
+				set.addAll(getMetaAnnotations(annotationType, type));
+			}
+		}
 		return set;
 	}
 
+	public AnnotationMirror getAnnotation(Element element, String type) {
+		if (element != null) {
+			for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+				Element annotationType = annotation.getAnnotationType().asElement();
+				String annotationTypename = getAnnotationName(annotationType);
+				if (isIgnored(annotationTypename)) {
+					continue;
+				}
+				if (type.equals(annotationTypename)) {
+					return annotation;
+				}
+				Set<AnnotationMirror> metas = getMetaAnnotations(annotationType, type);
+				if (!metas.isEmpty()) {
+					return metas.iterator().next();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The number of meta-annotation lookups that were answered from the index without
+	 * walking the annotation graph.
+	 */
+	public int getIndexHits() {
+		return this.indexHits;
+	}
+
+	/**
+	 * The number of meta-annotation lookups that had to walk the annotation graph (once
+	 * per annotation type and target).
+	 */
+	public int getIndexMisses() {
+		return this.indexMisses;
+	}
+
+	/**
+	 * The number of distinct annotation types whose meta-annotations had to be resolved by
+	 * walking the annotation graph.
+	 */
+	public int getResolvedTypes() {
+		return this.resolvedTypes.size();
+	}
+
+	/**
+	 * Forget the elements from the last round (the counts are kept).
+	 */
+	public void reset() {
+		this.metaAnnotations.clear();
+		this.annotationNames.clear();
+	}
+
+	private boolean isIgnored(String annotationTypename) {
+		return annotationTypename.startsWith("java.lang")
+				|| annotationTypename.equals(SpringClassNames.NULLABLE.toString());
+	}
+
+	private String getAnnotationName(Element annotationType) {
+		return this.annotationNames.computeIfAbsent(annotationType,
+				key -> ((TypeElement) key).getQualifiedName().toString());
+	}
+
+	private Set<AnnotationMirror> getMetaAnnotations(Element annotationType,
+			String type) {
+		Map<String, Set<AnnotationMirror>> index = this.metaAnnotations
+				.computeIfAbsent(annotationType, key -> new HashMap<>());
+		Set<AnnotationMirror> metas = index.get(type);
+		if (metas != null) {
+			this.indexHits++;
+			return metas;
+		}
+		this.indexMisses++;
+		this.resolvedTypes.add(getAnnotationName(annotationType));
+		metas = new LinkedHashSet<>();
+		getAnnotations(annotationType, type, metas, new HashSet<>());
+		metas = metas.isEmpty() ? Collections.emptySet()
+				: Collections.unmodifiableSet(metas);
+		index.put(type, metas);
+		return metas;
+	}
+
 	private void getAnnotations(Element element, String type, Set<AnnotationMirror> set,
 			Set<AnnotationMirror> seen) {
 
@@ -77,10 +180,7 @@ public class ElementUtils {
 			for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
 				String annotationTypename = annotation.getAnnotationType().toString();
 				try {
-					if (annotationTypename.startsWith("java.lang")) {
-						continue;
-					}
-					if (annotationTypename.equals(SpringClassNames.NULLABLE.toString())) {
+					if (isIgnored(annotationTypename)) {
 						continue;
 					}
 					if (type.equals(annotationTypename)) {
@@ -102,41 +202,63 @@ public class ElementUtils {
 
 	}
 
-	public AnnotationMirror getAnnotation(Element element, String type) {
-		return getAnnotation(element, type, new HashSet<>());
+	/**
+	 * Whether the initializers for this top level type (and its nested types) can be
+	 * generated from its own source and the types it refers to (e.g. bean method return
+	 * and parameter types): it is annotated directly with <code>@Configuration</code>
+	 * and neither it nor any nested type imports or scans for anything else, or extends
+	 * another class (which might have bean methods of its own).
+	 */
+	public boolean isIsolated(TypeElement type) {
+		if (type.getNestingKind().isNested()) {
+			return false;
+		}
+		for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+			if (getAnnotationName(annotation.getAnnotationType().asElement())
+					.equals(SpringClassNames.CONFIGURATION.toString())) {
+				return !hasImports(type) && !hasSuperclass(type);
+			}
+		}
+		return false;
 	}
 
-	private AnnotationMirror getAnnotation(Element element, String type,
-			Set<AnnotationMirror> seen) {
-		if (element != null) {
-			for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
-				String annotationTypename = annotation.getAnnotationType().toString();
-				try {
-					if (annotationTypename.startsWith("java.lang")) {
-						continue;
-					}
-					if (annotationTypename.equals(SpringClassNames.NULLABLE.toString())) {
-						continue;
-					}
-					if (type.equals(annotationTypename)) {
-						return annotation;
-					}
-					if (!seen.contains(annotation)) {
-						seen.add(annotation);
-						annotation = getAnnotation(
-								annotation.getAnnotationType().asElement(), type, seen);
-						if (annotation != null) {
-							return annotation;
-						}
-					}
-				}
-				catch (Throwable t) {
-					messager.printMessage(Kind.ERROR,
-							"Problems working with annotation " + annotationTypename);
-				}
+	private boolean hasSuperclass(TypeElement type) {
+		TypeElement superType = getSuperType(type);
+		if (superType != null
+				&& !superType.getQualifiedName().contentEquals(Object.class.getName())) {
+			return true;
+		}
+		for (Element element : type.getEnclosedElements()) {
+			if (element instanceof TypeElement && hasSuperclass((TypeElement) element)) {
+				return true;
 			}
 		}
-		return null;
+		return false;
+	}
+
+	private boolean hasImports(TypeElement type) {
+		if (hasAnnotation(type, SpringClassNames.IMPORT.toString())
+				|| hasAnnotation(type, SpringClassNames.IMPORT_RESOURCE.toString())
+				|| hasAnnotation(type, SpringClassNames.COMPONENT_SCAN.toString())) {
+			return true;
+		}
+		for (Element element : type.getEnclosedElements()) {
+			if (element instanceof TypeElement && hasImports((TypeElement) element)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The outermost type enclosing this one (or the type itself if it is top level).
+	 */
+	public TypeElement getTopLevelType(TypeElement type) {
+		Element element = type;
+		while (element.getEnclosingElement() instanceof TypeElement) {
+			element = element.getEnclosingElement();
+		}
+		return (TypeElement) element;
 	}
 
 	public boolean isImporter(TypeElement imported) {
@@ -166,6 +288,17 @@ public class ElementUtils {
 		return type;
 	}
 
+	public String getBinaryName(TypeElement type) {
+		return elements.getBinaryName(type).toString();
+	}
+
+	/**
+	 * The annotations on a type, including the ones inherited from its superclasses.
+	 */
+	public List<? extends AnnotationMirror> getAllAnnotationMirrors(TypeElement type) {
+		return elements.getAllAnnotationMirrors(type);
+	}
+
 	public String getQualifiedName(TypeElement type) {
 		return types.erasure(type.asType()).toString();
 	}
@@ -694,6 +827,25 @@ public class ElementUtils {
 		return list.isEmpty() ? null : list.iterator().next();
 	}
 
+	/**
+	 * The raw value of an attribute of an annotation directly on the element (boxed
+	 * primitive, String etc.), or null if the annotation or the attribute is absent.
+	 */
+	public Object getAnnotationValue(Element type, String annotation, String attribute) {
+		for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+			if (getAnnotationName(mirror.getAnnotationType().asElement())
+					.equals(annotation)) {
+				for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror
+						.getElementValues().entrySet()) {
+					if (entry.getKey().getSimpleName().toString().equals(attribute)) {
+						return entry.getValue().getValue();
+					}
+				}
+			}
+		}
+		return null;
+	}
+
 	public List<String> getStringsFromAnnotation(Element type, String annotation,
 			String attribute) {
 		Set<String> list = new HashSet<>();
@@ -747,4 +899,15 @@ public class ElementUtils {
 	public boolean isLazy(VariableElement param) {
 		return hasAnnotation(param, SpringClassNames.LAZY.toString());
 	}
+
+	/**
+	 * The value of <code>@Lazy</code> on the element (true unless it says otherwise), or
+	 * null if it is not annotated.
+	 */
+	public Boolean getLazyInit(Element element) {
+		if (!hasAnnotation(element, SpringClassNames.LAZY.toString())) {
+			return null;
+		}
+		return !Boolean.FALSE.equals(getAnnotationValue(element, SpringClassNames.LAZY.toString(), "value"));
+	}
 }
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.processor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Fingerprints of the inputs for configuration types, covering the type itself and
+ * everything it pulls in (imports, nested and scanned components, superclasses), so
+ * that an initializer only needs to be generated when one of its inputs changes, and
+ * that can be checked before generating anything. Apart from the signatures (including
+ * annotation values) of those types, the inputs are the processor options, the order
+ * that imports and components are found, which of them are in the component index, the
+ * type hierarchies of the types that beans are declared with and injected as, and what
+ * allowlisted import selectors return. Fingerprints from previous builds are kept so
+ * that they survive compilations that only see some of the types.
+ *
+ * @author Dave Syer
+ *
+ */
+public class Fingerprints {
+
+	private ElementUtils utils;
+	private Imports imports;
+	private Components components;
+	private Map<String, String> previous = new LinkedHashMap<>();
+	private Map<String, String> current = new LinkedHashMap<>();
+	private Map<TypeElement, String> signatures = new HashMap<>();
+	private Map<String, String> options = new TreeMap<>();
+	private Map<TypeElement, String> hierarchies = new HashMap<>();
+	private ImportSelectors selectors;
+
+	public Fingerprints(ElementUtils utils, Imports imports, Components components) {
+		this.utils = utils;
+		this.imports = imports;
+		this.components = components;
+	}
+
+	public void addPrevious(String type, String fingerprint) {
+		this.previous.put(type, fingerprint);
+	}
+
+	/**
+	 * Add a processor option that changes the generated code, so that all the
+	 * fingerprints change with it.
+	 */
+	public void addOption(String name, String value) {
+		this.options.put(name, value);
+	}
+
+	/**
+	 * The import selectors that are run at build time, so that what they select is part
+	 * of the fingerprint.
+	 */
+	public void setImportSelectors(ImportSelectors selectors) {
+		this.selectors = selectors;
+	}
+
+	/**
+	 * All the fingerprints that should be saved for the next build: the ones from the
+	 * previous build overlaid with the ones computed in this one.
+	 */
+	public Map<String, String> getFingerprints() {
+		Map<String, String> result = new TreeMap<>(this.previous);
+		result.putAll(this.current);
+		return result;
+	}
+
+	/**
+	 * Compute and record the fingerprint of the type and its closure, and report whether
+	 * it is the same as in the previous build.
+	 */
+	public boolean isUnchanged(TypeElement type) {
+		String name = type.getQualifiedName().toString();
+		return record(type).equals(this.previous.get(name));
+	}
+
+	/**
+	 * Compute and record the fingerprint of the type and its closure (for a type that
+	 * is generated somewhere else, it is still needed if it stops being isolated).
+	 * @return the fingerprint
+	 */
+	public String record(TypeElement type) {
+		String fingerprint = fingerprint(type);
+		this.current.put(type.getQualifiedName().toString(), fingerprint);
+		return fingerprint;
+	}
+
+	private String fingerprint(TypeElement type) {
+		Map<String, String> closure = new TreeMap<>();
+		collect(type, closure);
+		// A new version of the processor may generate different code
+		StringBuilder builder = new StringBuilder(
+				String.valueOf(Fingerprints.class.getPackage().getImplementationVersion()));
+		builder.append(this.options).append("\n");
+		selections(type, type, closure, builder);
+		for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+			// Imports from something like @EnableBar are selected for the same type
+			selections(type, (TypeElement) annotation.getAnnotationType().asElement(),
+					closure, builder);
+		}
+		for (Map.Entry<String, String> entry : closure.entrySet()) {
+			builder.append(entry.getKey()).append("=").append(entry.getValue())
+					.append("\n");
+		}
+		return digest(builder.toString());
+	}
+
+	private void selections(TypeElement importer, TypeElement element,
+			Map<String, String> closure, StringBuilder builder) {
+		if (this.selectors == null) {
+			return;
+		}
+		for (TypeElement imported : imports.getImports(element)) {
+			List<String> selected = this.selectors.select(importer, imported);
+			if (selected != null) {
+				builder.append(imported.getQualifiedName()).append(">").append(selected)
+						.append("\n");
+				for (String name : selected) {
+					collect(utils.asTypeElement(name.replace("$", ".")), closure);
+				}
+			}
+		}
+	}
+
+	private void collect(TypeElement type, Map<String, String> closure) {
+		if (type == null) {
+			return;
+		}
+		String name = type.getQualifiedName().toString();
+		if (closure.containsKey(name) || name.startsWith("java.")) {
+			return;
+		}
+		// The order that imports and components are found is in the generated code
+		Set<TypeElement> imported = imports.getImports(type);
+		Set<TypeElement> scanned = components.getComponents(type);
+		closure.put(name, signature(type) + names(imported) + names(scanned)
+				+ components.getAll().contains(type));
+		for (TypeElement element : imported) {
+			collect(element, closure);
+		}
+		if (scanned != null) {
+			for (TypeElement component : scanned) {
+				collect(component, closure);
+			}
+		}
+		for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+			TypeElement element = (TypeElement) annotation.getAnnotationType().asElement();
+			if (imports.getImports().containsKey(element)) {
+				collect(element, closure);
+			}
+		}
+		collect(utils.getSuperType(type), closure);
+	}
+
+	private String names(Set<TypeElement> types) {
+		if (types == null) {
+			return "[]";
+		}
+		return types.stream().map(type -> type.getQualifiedName().toString())
+				.collect(Collectors.toList()).toString();
+	}
+
+	private String signature(TypeElement type) {
+		// Not computeIfAbsent because nested types recurse
+		String signature = this.signatures.get(type);
+		if (signature == null) {
+			StringBuilder builder = new StringBuilder();
+			append(builder, type);
+			builder.append(type.getSuperclass()).append(type.getInterfaces()).append(hierarchy(type));
+			for (Element element : type.getEnclosedElements()) {
+				append(builder, element);
+				if (element instanceof ExecutableElement) {
+					ExecutableElement method = (ExecutableElement) element;
+					builder.append(method.getReturnType()).append(hierarchy(method.getReturnType()));
+					for (VariableElement param : method.getParameters()) {
+						append(builder, param);
+						builder.append(param.asType()).append(hierarchy(param.asType()));
+					}
+				}
+				else if (element instanceof TypeElement) {
+					// Nested types are part of the signature of their enclosing type
+					builder.append(signature((TypeElement) element));
+				}
+			}
+			signature = digest(builder.toString());
+			this.signatures.put(type, signature);
+		}
+		return signature;
+	}
+
+	private String hierarchy(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return "";
+		}
+		return hierarchy((TypeElement) ((DeclaredType) type).asElement());
+	}
+
+	/**
+	 * The names of all the supertypes, which decide how a bean is registered or
+	 * injected (e.g. as a <code>FactoryBean</code> or a <code>Collection</code>).
+	 */
+	private String hierarchy(TypeElement type) {
+		// Not computeIfAbsent because it recurses
+		String hierarchy = this.hierarchies.get(type);
+		if (hierarchy == null) {
+			Set<String> names = new TreeSet<>();
+			List<TypeMirror> supertypes = new ArrayList<>(type.getInterfaces());
+			supertypes.add(type.getSuperclass());
+			for (TypeMirror supertype : supertypes) {
+				if (supertype.getKind() == TypeKind.DECLARED) {
+					TypeElement element = (TypeElement) ((DeclaredType) supertype).asElement();
+					names.add(element.getQualifiedName().toString());
+					String inherited = hierarchy(element);
+					if (!inherited.isEmpty()) {
+						names.addAll(Arrays.asList(inherited.split(",")));
+					}
+				}
+			}
+			hierarchy = String.join(",", names);
+			this.hierarchies.put(type, hierarchy);
+		}
+		return hierarchy;
+	}
+
+	private void append(StringBuilder builder, Element element) {
+		builder.append(element.getKind()).append(" ").append(element.getModifiers())
+				.append(" ").append(element).append(" ");
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			builder.append(annotation);
+		}
+		TypeMirror type = element.asType();
+		if (type.getKind() != TypeKind.EXECUTABLE) {
+			builder.append(type);
+		}
+		builder.append(";");
+	}
+
+	private static String digest(String value) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] bytes = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder();
+			for (int i = 0; i < 16; i++) {
+				builder.append(String.format("%02x", bytes[i]));
+			}
+			return builder.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("No SHA-256 digest available", e);
+		}
+	}
+
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.processor;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.Aware;
+import org.springframework.context.annotation.DeferredImportSelector;
+import org.springframework.context.annotation.ImportSelector;
+import org.springframework.core.annotation.MergedAnnotation;
+import org.springframework.core.annotation.MergedAnnotations;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Runs an allowlist of <code>ImportSelectors</code> at build time, so that the
+ * generated initializers can import the selected types directly, instead of creating
+ * the selector at runtime. Only selectors whose result depends on nothing but the
+ * annotations on the importing class (and the classpath) should be in the list. A
+ * selector is only run if it can be loaded by the processor (i.e. it is on the
+ * annotation processor path), is not deferred and is not <code>Aware</code> of
+ * anything. Otherwise, or if it fails, or if it asks for method metadata (which is not
+ * available at build time), it is left to run at runtime as usual.
+ *
+ * @author Dave Syer
+ *
+ */
+public class ImportSelectors {
+
+	private final ElementUtils utils;
+
+	private final Set<String> allowed;
+
+	private final ClassLoader classLoader = ImportSelectors.class.getClassLoader();
+
+	// Importer and selector names to the result (the fingerprints ask as well)
+	private final Map<String, List<String>> selections = new HashMap<>();
+
+	public ImportSelectors(ElementUtils utils, Collection<String> allowed) {
+		this.utils = utils;
+		this.allowed = new LinkedHashSet<>(allowed);
+	}
+
+	/**
+	 * Parse the value of the processor option (a comma-separated list of class names).
+	 */
+	public static Set<String> parse(String value) {
+		Set<String> names = new LinkedHashSet<>();
+		if (value != null) {
+			for (String name : value.split(",")) {
+				if (!name.trim().isEmpty()) {
+					names.add(name.trim());
+				}
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Run the selector for the importing configuration class, if it is in the allowlist.
+	 * @param importer the configuration class that imports the selector
+	 * @param selector the import selector
+	 * @return the selected class names, or null if the selector has to run at runtime
+	 */
+	public List<String> select(TypeElement importer, TypeElement selector) {
+		String name = utils.getBinaryName(selector);
+		if (!this.allowed.contains(name)) {
+			return null;
+		}
+		String key = utils.getBinaryName(importer) + ">" + name;
+		if (!this.selections.containsKey(key)) {
+			this.selections.put(key, select(importer, name));
+		}
+		return this.selections.get(key);
+	}
+
+	private List<String> select(TypeElement importer, String name) {
+		if (!isPresent(name)) {
+			utils.printMessage(Kind.NOTE, "Import selector is not on the processor path: " + name);
+			return null;
+		}
+		try {
+			return new Selector(name).select(importer);
+		}
+		catch (MethodMetadataRequired e) {
+			utils.printMessage(Kind.NOTE, "Import selector needs method metadata: " + name);
+			return null;
+		}
+		catch (Throwable e) {
+			utils.printMessage(Kind.NOTE, "Import selector failed at build time: " + name + " (" + e + ")");
+			return null;
+		}
+	}
+
+	private boolean isPresent(String name) {
+		try {
+			// Spring is only on the processor path if the user put it there
+			Class.forName(SpringClassNames.IMPORT_SELECTOR.reflectionName(), false, this.classLoader);
+			Class.forName(name, false, this.classLoader);
+			return true;
+		}
+		catch (Throwable e) {
+			return false;
+		}
+	}
+
+	/**
+	 * The part that needs Spring, so it is only loaded if there is a selector to run.
+	 */
+	private class Selector {
+
+		private final String name;
+
+		Selector(String name) {
+			this.name = name;
+		}
+
+		List<String> select(TypeElement importer) throws ClassNotFoundException {
+			Class<?> type = ClassUtils.forName(this.name, classLoader);
+			if (!ImportSelector.class.isAssignableFrom(type) || DeferredImportSelector.class.isAssignableFrom(type)
+					|| Aware.class.isAssignableFrom(type)) {
+				utils.printMessage(Kind.NOTE, "Import selector cannot run at build time: " + this.name);
+				return null;
+			}
+			ImportSelector instance = (ImportSelector) BeanUtils.instantiateClass(type);
+			return Arrays.asList(instance.selectImports(new ElementMetadata(importer, getAnnotations(importer))));
+		}
+
+		private MergedAnnotations getAnnotations(TypeElement importer) throws ClassNotFoundException {
+			List<MergedAnnotation<?>> annotations = new ArrayList<>();
+			for (AnnotationMirror mirror : utils.getAllAnnotationMirrors(importer)) {
+				String name = utils.getBinaryName((TypeElement) mirror.getAnnotationType().asElement());
+				if (!ClassUtils.isPresent(name, classLoader)) {
+					// Can't be what the selector is looking for
+					continue;
+				}
+				@SuppressWarnings("unchecked")
+				Class<Annotation> type = (Class<Annotation>) ClassUtils.forName(name, classLoader);
+				Map<String, Object> attributes = new LinkedHashMap<>();
+				for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror
+						.getElementValues().entrySet()) {
+					String attribute = entry.getKey().getSimpleName().toString();
+					Class<?> attributeType = ClassUtils.getMethod(type, attribute).getReturnType();
+					attributes.put(attribute, getValue(attributeType, entry.getValue().getValue()));
+				}
+				annotations.add(MergedAnnotation.of(classLoader, null, type, attributes));
+			}
+			return MergedAnnotations.of(annotations);
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Object getValue(Class<?> type, Object value) {
+			if (value instanceof List) {
+				Class<?> component = type.getComponentType();
+				List<?> values = (List<?>) value;
+				// Class values are held as class names, like in metadata read from a class
+				// file
+				Object array = Array.newInstance(component == Class.class ? String.class : component,
+						values.size());
+				for (int i = 0; i < values.size(); i++) {
+					Array.set(array, i, getValue(component, ((AnnotationValue) values.get(i)).getValue()));
+				}
+				return array;
+			}
+			if (value instanceof TypeMirror) {
+				TypeMirror mirror = (TypeMirror) value;
+				Element element = utils.asElement(mirror);
+				return mirror.getKind() == TypeKind.DECLARED && element instanceof TypeElement
+						? utils.getBinaryName((TypeElement) element) : mirror.toString();
+			}
+			if (value instanceof VariableElement) {
+				return Enum.valueOf((Class<Enum>) type, ((VariableElement) value).getSimpleName().toString());
+			}
+			if (value instanceof AnnotationMirror) {
+				throw new IllegalStateException("Nested annotations are not supported");
+			}
+			return value;
+		}
+
+	}
+
+	/**
+	 * Signal that a selector asked for method metadata.
+	 */
+	@SuppressWarnings("serial")
+	private static class MethodMetadataRequired extends RuntimeException {
+
+		MethodMetadataRequired() {
+			super("Method metadata is not available at build time", null, false, false);
+		}
+
+	}
+
+	private static class ElementMetadata implements AnnotationMetadata {
+
+		private final TypeElement type;
+
+		private final MergedAnnotations annotations;
+
+		ElementMetadata(TypeElement type, MergedAnnotations annotations) {
+			this.type = type;
+			this.annotations = annotations;
+		}
+
+		@Override
+		public MergedAnnotations getAnnotations() {
+			return this.annotations;
+		}
+
+		@Override
+		public String getClassName() {
+			return binaryName(this.type);
+		}
+
+		@Override
+		public boolean isInterface() {
+			return this.type.getKind().isInterface();
+		}
+
+		@Override
+		public boolean isAnnotation() {
+			return this.type.getKind() == ElementKind.ANNOTATION_TYPE;
+		}
+
+		@Override
+		public boolean isAbstract() {
+			return this.type.getModifiers().contains(Modifier.ABSTRACT);
+		}
+
+		@Override
+		public boolean isFinal() {
+			return this.type.getModifiers().contains(Modifier.FINAL);
+		}
+
+		@Override
+		public boolean isIndependent() {
+			return this.type.getNestingKind() == NestingKind.TOP_LEVEL
+					|| this.type.getModifiers().contains(Modifier.STATIC);
+		}
+
+		@Override
+		public String getEnclosingClassName() {
+			Element enclosing = this.type.getEnclosingElement();
+			return enclosing instanceof TypeElement ? binaryName((TypeElement) enclosing) : null;
+		}
+
+		@Override
+		public String getSuperClassName() {
+			TypeMirror superclass = this.type.getSuperclass();
+			return superclass.getKind() == TypeKind.DECLARED
+					? binaryName((TypeElement) ((DeclaredType) superclass).asElement()) : null;
+		}
+
+		@Override
+		public String[] getInterfaceNames() {
+			List<String> names = new ArrayList<>();
+			for (TypeMirror type : this.type.getInterfaces()) {
+				names.add(binaryName((TypeElement) ((DeclaredType) type).asElement()));
+			}
+			return names.toArray(new String[0]);
+		}
+
+		@Override
+		public String[] getMemberClassNames() {
+			List<String> names = new ArrayList<>();
+			for (Element element : this.type.getEnclosedElements()) {
+				if (element instanceof TypeElement) {
+					names.add(binaryName((TypeElement) element));
+				}
+			}
+			return names.toArray(new String[0]);
+		}
+
+		/**
+		 * Method metadata would have to be built from the elements, and selectors hardly
+		 * ever need it, so a selector that asks for it is run at runtime instead (this
+		 * is also what {@link #hasAnnotatedMethods(String)} calls).
+		 */
+		@Override
+		public Set<MethodMetadata> getAnnotatedMethods(String annotationName) {
+			throw new MethodMetadataRequired();
+		}
+
+		private static String binaryName(TypeElement type) {
+			Element enclosing = type.getEnclosingElement();
+			return enclosing instanceof TypeElement ? binaryName((TypeElement) enclosing) + "$" + type.getSimpleName()
+					: type.getQualifiedName().toString();
+		}
+
+		@Override
+		public String toString() {
+			return getClassName();
+		}
+
+	}
+
+}
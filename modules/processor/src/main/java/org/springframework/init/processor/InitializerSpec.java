@@ -15,21 +15,28 @@
  */
 package org.springframework.init.processor;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.annotation.processing.Filer;
 import javax.lang.model.element.AnnotationMirror;
-import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
@@ -39,16 +46,25 @@ import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 
+import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 import com.squareup.javapoet.TypeSpec.Builder;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+
+import org.springframework.init.func.EagerTypes;
 
 /**
  * @author Dave Syer
@@ -56,6 +72,31 @@ import com.squareup.javapoet.TypeSpec.Builder;
  */
 public class InitializerSpec implements Comparable<InitializerSpec> {
 
+	/**
+	 * The maximum number of statements (including the lines that open and close blocks)
+	 * in one generated method. A registration statement is up to about 50 bytes of
+	 * bytecode, so this keeps methods well under the JIT limit
+	 * (<code>-XX:HugeMethodLimit</code>, 8000 bytes by default).
+	 */
+	static final int MAX_STATEMENTS_PER_METHOD = 100;
+
+	// Each supplier is a case label and a return statement
+	private static final int MAX_SUPPLIERS_PER_METHOD = MAX_STATEMENTS_PER_METHOD / 2;
+
+	private static final Pattern CONDITIONS_USAGE = Pattern.compile("(?<![\\w.])conditions\\.");
+
+	private static final Pattern CONDITIONS_DECLARATION = Pattern.compile("\\sconditions = ");
+
+	/**
+	 * The prefix of the resource that holds the bean graph for an initializer (followed
+	 * by the initializer class name and <code>.properties</code>).
+	 */
+	static final String GRAPH_LOCATION = "META-INF/spring-init/graph/";
+
+	// Bean types that are not lazy even if lazy initialization is switched on
+	private static final List<ClassName> EAGER_TYPES = EagerTypes.NAMES.stream().map(ClassName::bestGuess)
+			.collect(Collectors.toList());
+
 	private TypeSpec initializer;
 
 	private String pkg;
@@ -72,11 +113,29 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 
 	private Components components;
 
+	private Conditions conditions;
+
 	private boolean hasEnabled = false;
 
+	private Map<ExecutableElement, String> enabledMethods = new HashMap<>();
+
+	private List<MethodSpec> registrars = new ArrayList<>();
+
+	private boolean dispatch = false;
+
+	private List<CodeBlock> suppliers = new ArrayList<>();
+
+	private TypeName holder;
+
+	private ImportSelectors selectors;
+
+	// Bean name to type, and bean name#dependencies to a list of dependencies
+	private Map<String, String> graph = new LinkedHashMap<>();
+
 	public InitializerSpec(ElementUtils utils, TypeElement type, Imports imports, Components components) {
 		this.utils = utils;
 		this.components = components;
+		this.conditions = new Conditions(utils);
 		this.className = toInitializerNameFromConfigurationName(type);
 		this.pkg = ClassName.get(type).packageName();
 		type = imports.getImports().containsKey(type) && type.getKind() == ElementKind.ANNOTATION_TYPE
@@ -92,6 +151,25 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 		}
 	}
 
+	/**
+	 * Generate one <code>Supplier</code> class for all the beans in the initializer
+	 * (dispatching on an index) instead of a lambda per bean. Fewer classes are loaded
+	 * and fewer <code>invokedynamic</code> call sites are bootstrapped at startup.
+	 * @param dispatch flag to switch on supplier dispatch
+	 */
+	public void setSupplierDispatch(boolean dispatch) {
+		this.dispatch = dispatch;
+	}
+
+	/**
+	 * Run the allowlisted import selectors at build time and import what they select
+	 * directly.
+	 * @param selectors the import selectors that can be run at build time
+	 */
+	public void setImportSelectors(ImportSelectors selectors) {
+		this.selectors = selectors;
+	}
+
 	public TypeElement getConfigurationType() {
 		return configurationType;
 	}
@@ -111,6 +189,37 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 		this.initializer = module;
 	}
 
+	/**
+	 * The beans registered by the initializer, keyed by bean name, with their types and
+	 * (where they are known) dependencies, in the order that they are registered. Each
+	 * dependency is <code>kind:type</code>, or <code>bean:type:qualifier</code>, where
+	 * the kind is one of <code>bean</code>, <code>provider</code>, <code>optional</code>,
+	 * <code>lazy</code> or <code>collection</code>. Beans with conditions are included whether or not they
+	 * will be registered. Any <code>%</code>, <code>,</code> or <code>:</code> in a
+	 * qualifier is percent-encoded.
+	 */
+	public Map<String, String> getBeanGraph() {
+		getInitializer();
+		return graph;
+	}
+
+	public String getBeanGraphLocation() {
+		return GRAPH_LOCATION + className.reflectionName() + ".properties";
+	}
+
+	/**
+	 * Write the bean graph next to the initializer, sorted by bean name and with no
+	 * timestamp, so it is the same if nothing changes. Keys and values are escaped like
+	 * any other properties file.
+	 */
+	public void writeBeanGraph(Filer filer) throws IOException {
+		FileObject resource = filer.createResource(StandardLocation.CLASS_OUTPUT, "", getBeanGraphLocation(),
+				utils.getTopLevelType(this.configurationType));
+		try (OutputStream stream = resource.openOutputStream()) {
+			PropertiesUtils.store(new TreeMap<>(getBeanGraph()), stream);
+		}
+	}
+
 	public String getPackage() {
 		return pkg;
 	}
@@ -121,52 +230,123 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 
 	private TypeSpec createInitializer(TypeElement type) {
 		Builder builder = TypeSpec.classBuilder(getClassName());
+		builder.addOriginatingElement(utils.getTopLevelType(this.configurationType));
 		builder.addSuperinterface(SpringClassNames.INITIALIZER_TYPE);
 		builder.addModifiers(Modifier.PUBLIC);
 		this.hasEnabled = maybeAddEnabled(builder);
 		builder.addMethod(createInitializer());
+		builder.addMethods(this.registrars);
+		addConditionMetadata(builder);
+		if (!this.suppliers.isEmpty()) {
+			builder.addType(createSupplier());
+		}
 		return builder.build();
 	}
 
-	private boolean maybeAddEnabled(Builder builder) {
-		boolean conditional = utils.hasAnnotation(this.configurationType,
-				SpringClassNames.CONDITIONAL_ON_CLASS.toString());
-		if (!conditional) {
-			return false;
+	/**
+	 * Implement <code>ConditionMetadataSource</code> with the annotations that the
+	 * runtime conditions need, for the configuration class and for the bean methods that
+	 * have runtime conditions, so the <code>ConditionService</code> doesn't have to read
+	 * the class file. The configuration class keeps its compiled conditions as well,
+	 * because the import registrars ask the <code>ConditionService</code> about it
+	 * without running the initializer.
+	 */
+	private void addConditionMetadata(Builder builder) {
+		List<CodeBlock> annotations = conditions.getMetadataAnnotations(this.configurationType, true);
+		MethodSpec.Builder type = MethodSpec.methodBuilder("getTypeMetadata");
+		type.addAnnotation(Override.class);
+		type.addModifiers(Modifier.PUBLIC);
+		type.returns(SpringClassNames.ANNOTATION_METADATA);
+		if (annotations != null) {
+			annotations.add(0, CodeBlock.of("$T.class", this.configurationType));
+			type.addStatement("return $T.type($L)", SpringClassNames.GENERATED_METADATA,
+					CodeBlock.join(annotations, ",\n"));
 		}
-		AnnotationMirror anno = utils.getAnnotation(this.configurationType,
-				SpringClassNames.CONDITIONAL_ON_CLASS.toString());
-		Map<? extends ExecutableElement, ? extends AnnotationValue> values = anno.getElementValues();
-		List<TypeMirror> types = new ArrayList<>();
-		for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
-			if (entry.getKey().toString().equals("value()")) {
-				@SuppressWarnings("unchecked")
-				List<AnnotationValue> value = (List<AnnotationValue>) entry.getValue().getValue();
-				for (AnnotationValue type : value) {
-					TypeMirror mirror = (TypeMirror) type.getValue();
-					types.add(mirror);
-				}
+		else {
+			type.addStatement("return null");
+		}
+		MethodSpec.Builder bean = MethodSpec.methodBuilder("getBeanMetadata");
+		bean.addAnnotation(Override.class);
+		bean.addModifiers(Modifier.PUBLIC);
+		bean.returns(SpringClassNames.METHOD_METADATA);
+		bean.addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class)),
+				"type");
+		Set<String> types = new HashSet<>();
+		com.squareup.javapoet.CodeBlock.Builder cases = CodeBlock.builder();
+		for (ExecutableElement method : getBeanMethods(this.configurationType)) {
+			if (!conditions.isConditional(method)) {
+				continue;
+			}
+			Element returnType = utils.asElement(utils.getReturnType(method));
+			annotations = conditions.getMetadataAnnotations(method, false);
+			// The ConditionService finds the first bean method with the type, so we do too
+			if (!(returnType instanceof TypeElement) || annotations == null
+					|| !types.add(utils.getBinaryName((TypeElement) returnType))) {
+				continue;
 			}
-			// TODO: enumerate class names as well
+			String name = utils.getBinaryName((TypeElement) returnType);
+			annotations.add(0, CodeBlock.of("$T.annotation($T.class)", SpringClassNames.GENERATED_METADATA,
+					SpringClassNames.BEAN));
+			cases.add("case $S:\n", name).indent();
+			cases.addStatement("return $T.method($S, $S, $S, $L,\n$L)", SpringClassNames.GENERATED_METADATA,
+					utils.getBinaryName((TypeElement) method.getEnclosingElement()), method.getSimpleName(), name,
+					getModifiers(method), CodeBlock.join(annotations, ",\n"));
+			cases.unindent();
 		}
-		if (types.isEmpty()) {
-			return false;
+		if (!cases.isEmpty()) {
+			bean.beginControlFlow("switch (type.getName())");
+			bean.addCode(cases.build());
+			bean.endControlFlow();
 		}
-		builder.addField(TypeName.BOOLEAN, "enabled", Modifier.STATIC, Modifier.PRIVATE, Modifier.FINAL);
-		com.squareup.javapoet.CodeBlock.Builder code = CodeBlock.builder();
-		code.add("enabled =\n");
-		for (int i = 0; i < types.size(); i++) {
-			TypeMirror type = types.get(i);
-			code.add("$T.isPresent(\"$L\", null)", SpringClassNames.CLASS_UTILS, utils.asElement(type));
-			if (i < types.size() - 1) {
-				code.add(" &&\n");
+		bean.addStatement("return null");
+		builder.addSuperinterface(SpringClassNames.CONDITION_METADATA_SOURCE);
+		builder.addMethod(type.build());
+		builder.addMethod(bean.build());
+	}
+
+	private CodeBlock getModifiers(ExecutableElement method) {
+		List<CodeBlock> modifiers = new ArrayList<>();
+		for (Modifier modifier : method.getModifiers()) {
+			if (modifier == Modifier.PUBLIC || modifier == Modifier.PROTECTED || modifier == Modifier.PRIVATE
+					|| modifier == Modifier.STATIC || modifier == Modifier.FINAL) {
+				modifiers.add(CodeBlock.of("$T.$L", java.lang.reflect.Modifier.class, modifier.name()));
 			}
-			else {
-				code.add(";\n");
+		}
+		return modifiers.isEmpty() ? CodeBlock.of("0") : CodeBlock.join(modifiers, " | ");
+	}
+
+	private boolean maybeAddEnabled(Builder builder) {
+		com.squareup.javapoet.CodeBlock.Builder code = CodeBlock.builder();
+		CodeBlock condition = conditions.getClassCondition(this.configurationType);
+		boolean enabled = condition != null;
+		Set<String> names = new HashSet<>();
+		if (enabled) {
+			names.add("enabled");
+			addEnabled(builder, code, "enabled", condition);
+		}
+		for (ExecutableElement method : getBeanMethods(this.configurationType)) {
+			condition = conditions.getClassCondition(method);
+			if (condition != null) {
+				// Only the first overload is registered (like Spring does if it is
+				// skipped), but the field names still have to be unique
+				String name = method.getSimpleName() + "Enabled";
+				for (int index = 1; !names.add(name); index++) {
+					name = method.getSimpleName() + "Enabled" + index;
+				}
+				this.enabledMethods.put(method, name);
+				addEnabled(builder, code, name, condition);
 			}
 		}
-		builder.addStaticBlock(code.build());
-		return true;
+		if (!code.isEmpty()) {
+			builder.addStaticBlock(code.build());
+		}
+		return enabled;
+	}
+
+	private void addEnabled(Builder builder, com.squareup.javapoet.CodeBlock.Builder code, String name,
+			CodeBlock condition) {
+		builder.addField(TypeName.BOOLEAN, name, Modifier.STATIC, Modifier.PRIVATE, Modifier.FINAL);
+		code.add("$L =\n$L;\n", name, condition);
 	}
 
 	public static ClassName toInitializerNameFromConfigurationName(TypeElement type) {
@@ -204,7 +384,14 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 		Set<TypeElement> registrarInitializers = imports.getImports().get(element);
 		if (registrarInitializers != null) {
 			for (TypeElement imported : registrarInitializers) {
-				if (utils.isImporter(imported)) {
+				List<String> selected = selectors == null ? null : selectors.select(configurationType, imported);
+				if (selected != null && isStatic(selected)) {
+					for (String name : selected) {
+						builder.addStatement("context.getBeanFactory().getBean($T.class).add($T.class, $S)",
+								SpringClassNames.IMPORT_REGISTRARS, configurationType, name);
+					}
+				}
+				else if (utils.isImporter(imported)) {
 					builder.addStatement("context.getBeanFactory().getBean($T.class).add($T.class, \"$L\")",
 							SpringClassNames.IMPORT_REGISTRARS, configurationType, imported.getQualifiedName());
 				}
@@ -220,33 +407,173 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 		}
 	}
 
+	private boolean isStatic(List<String> selected) {
+		for (String name : selected) {
+			TypeElement type = utils.asTypeElement(name.replace("$", "."));
+			// Types selected at runtime are checked for conditions, but imported ones are
+			// not (unless they are configuration classes with their own initializers,
+			// which is also where class and property conditions are compiled)
+			if (type != null && !utils.hasAnnotation(type, SpringClassNames.CONFIGURATION.toString())
+					&& (conditions.isConditional(type) || conditions.getClassCondition(type) != null
+							|| conditions.getPropertyCondition(type) != null)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private void addBeanMethods(MethodSpec.Builder builder, TypeElement type) {
-		boolean conditional = utils.hasAnnotation(type, SpringClassNames.CONDITIONAL.toString());
+		boolean conditional = conditions.isConditional(type);
+		CodeBlock properties = conditions.getPropertyCondition(type);
 		if (this.hasEnabled) {
 			builder.beginControlFlow("if ($T.enabled)", this.className);
 		}
+		if (properties != null) {
+			builder.beginControlFlow("if ($L)", properties);
+		}
 		if (conditional) {
 			builder.addStatement("$T conditions = context.getBeanFactory().getBean($T.class)",
 					SpringClassNames.CONDITION_SERVICE, SpringClassNames.CONDITION_SERVICE);
 			builder.beginControlFlow("if (conditions.matches($T.class))", type);
 		}
-		builder.beginControlFlow("if (context.getBeanFactory().getBeanNamesForType($T.class).length==0)", type);
-		boolean conditionsAvailable = addScannedComponents(builder, conditional);
-		addNewBeanForConfig(builder, type);
-		for (ExecutableElement method : getBeanMethods(type)) {
-			conditionsAvailable |= createBeanMethod(builder, method, type, conditionsAvailable);
+		builder.beginControlFlow("if ($T.get(context).register($T.class))", SpringClassNames.REGISTRATION_INDEX, type);
+		List<ExecutableElement> beanMethods = getBeanMethods(type);
+		addConfigHolder(builder, type, beanMethods);
+		List<CodeBlock> registrations = new ArrayList<>();
+		boolean conditionsAvailable = addScannedComponents(registrations, conditional);
+		MethodSpec.Builder registration = registration();
+		addNewBeanForConfig(registration, type);
+		add(registrations, registration);
+		for (ExecutableElement method : beanMethods) {
+			registration = registration();
+			conditionsAvailable |= createBeanMethod(registration, method, type, conditionsAvailable);
+			add(registrations, registration);
 		}
-		addResources(builder);
-		addRegistrarInvokers(builder);
+		registration = registration();
+		addResources(registration);
+		add(registrations, registration);
+		registration = registration();
+		addRegistrarInvokers(registration);
+		add(registrations, registration);
+		addRegistrations(builder, registrations);
 		builder.endControlFlow();
 		if (conditional) {
 			builder.endControlFlow();
 		}
+		if (properties != null) {
+			builder.endControlFlow();
+		}
 		if (this.hasEnabled) {
 			builder.endControlFlow();
 		}
 	}
 
+	/**
+	 * The bean suppliers for instance <code>@Bean</code> methods share a holder for the
+	 * configuration bean, which is registered under its class name, so it only has to
+	 * be looked up once (by name).
+	 */
+	private void addConfigHolder(MethodSpec.Builder builder, TypeElement type, List<ExecutableElement> beanMethods) {
+		for (ExecutableElement method : beanMethods) {
+			if (!method.getModifiers().contains(Modifier.STATIC)) {
+				this.holder = ParameterizedTypeName.get(SpringClassNames.BEAN_HOLDER, ClassName.get(type));
+				builder.addStatement("$T config = new $T<>(context.getBeanFactory(), $S)", this.holder,
+						SpringClassNames.BEAN_HOLDER, utils.getBinaryName(type));
+				return;
+			}
+		}
+	}
+
+	/**
+	 * A scratch method to generate one registration (a scanned component, the
+	 * configuration bean, a bean method, or the imports), so it can be measured before
+	 * it is added to the initializer.
+	 */
+	private MethodSpec.Builder registration() {
+		return MethodSpec.methodBuilder("registration");
+	}
+
+	private void add(List<CodeBlock> registrations, MethodSpec.Builder registration) {
+		CodeBlock code = registration.build().code;
+		if (!code.isEmpty()) {
+			registrations.add(code);
+		}
+	}
+
+	/**
+	 * Add the registrations to the <code>initialize()</code> method, or if there are too
+	 * many statements, split them into private methods with at most
+	 * {@link #MAX_STATEMENTS_PER_METHOD} each (or one registration if it is bigger than
+	 * that), so that a configuration class with a lot of beans doesn't generate a
+	 * method that is too big for the JIT.
+	 */
+	private void addRegistrations(MethodSpec.Builder builder, List<CodeBlock> registrations) {
+		int total = 0;
+		for (CodeBlock registration : registrations) {
+			total += estimate(registration);
+		}
+		if (total <= MAX_STATEMENTS_PER_METHOD) {
+			for (CodeBlock registration : registrations) {
+				builder.addCode(registration);
+			}
+			return;
+		}
+		List<List<CodeBlock>> methods = new ArrayList<>();
+		List<Integer> sizes = new ArrayList<>();
+		List<CodeBlock> current = null;
+		int size = 0;
+		for (CodeBlock registration : registrations) {
+			int estimate = estimate(registration);
+			if (current == null || size + estimate > MAX_STATEMENTS_PER_METHOD) {
+				current = new ArrayList<>();
+				methods.add(current);
+				sizes.add(0);
+				size = 0;
+			}
+			current.add(registration);
+			size += estimate;
+			sizes.set(sizes.size() - 1, size);
+		}
+		for (List<CodeBlock> method : methods) {
+			String name = "registerBeans" + this.registrars.size();
+			MethodSpec.Builder registrar = MethodSpec.methodBuilder(name);
+			registrar.addModifiers(Modifier.PRIVATE);
+			registrar.addParameter(SpringClassNames.GENERIC_APPLICATION_CONTEXT, "context");
+			if (this.holder != null) {
+				registrar.addParameter(this.holder, "config");
+			}
+			CodeBlock code = CodeBlock.join(method, "");
+			// The ConditionService was looked up in another method
+			String source = code.toString();
+			if (CONDITIONS_USAGE.matcher(source).find() && !CONDITIONS_DECLARATION.matcher(source).find()) {
+				registrar.addStatement("$T conditions = context.getBeanFactory().getBean($T.class)",
+						SpringClassNames.CONDITION_SERVICE, SpringClassNames.CONDITION_SERVICE);
+			}
+			registrar.addCode(code);
+			this.registrars.add(registrar.build());
+			builder.addStatement(this.holder != null ? "$L(context, config)" : "$L(context)", name);
+		}
+		utils.printMessage(Kind.NOTE,
+				"Split " + registrations.size() + " registrations (" + total + " statements) in " + getClassName()
+						+ " into " + methods.size() + " methods of " + sizes + " statements (maximum "
+						+ MAX_STATEMENTS_PER_METHOD + " per method)");
+	}
+
+	/**
+	 * Estimate the number of statements in the code: one per line, so a block counts
+	 * its opening and closing lines, and a statement that is long enough to wrap counts
+	 * more than once (which errs on the safe side).
+	 */
+	private static int estimate(CodeBlock code) {
+		int count = 0;
+		for (String line : code.toString().split("\n")) {
+			if (!line.trim().isEmpty()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
 	private void addResources(MethodSpec.Builder builder) {
 		Set<String> locations = resources.getResources().get(configurationType);
 		if (locations != null) {
@@ -257,8 +584,8 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 		}
 	}
 
-	private boolean addScannedComponents(MethodSpec.Builder builder, boolean conditional) {
-		Set<TypeElement> set = components.getComponents().get(configurationType);
+	private boolean addScannedComponents(List<CodeBlock> registrations, boolean conditional) {
+		Set<TypeElement> set = components.getComponents(configurationType);
 		boolean filtered = false;
 		if (!utils.getAnnotationsFromAnnotation(configurationType, SpringClassNames.COMPONENT_SCAN.toString(),
 				"excludeFilters").isEmpty()) {
@@ -267,6 +594,7 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 		if (set != null) {
 			for (TypeElement imported : set) {
 				if (!imported.equals(configurationType)) {
+					MethodSpec.Builder builder = registration();
 					if (filtered) {
 						if (!conditional) {
 							builder.addStatement("$T conditions = context.getBeanFactory().getBean($T.class)",
@@ -283,19 +611,24 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 						if (imported.getModifiers().contains(Modifier.PUBLIC)) {
 							ExecutableElement constructor = getConstructor(imported);
 							Parameters params = autowireParamsForMethod(constructor);
-							builder.addStatement("context.registerBean($T.class, () -> new $T(" + params.format + "))",
-									ArrayUtils.merge(imported, imported, params.args));
+							builder.addStatement(
+									"context.registerBean($T.class, $L" + lazyInit(imported) + ")",
+									imported, supplier(CodeBlock.of("new $T(" + params.format + ")",
+											ArrayUtils.merge(imported, params.args)), false));
+							addGraphNode(utils.getBinaryName(imported), imported, params.dependencies);
 						}
 						else {
 							builder.addStatement(
 									"context.registerBean($T.resolveClassName(\"$L\", context.getClassLoader()))",
 									SpringClassNames.CLASS_UTILS, imported.getQualifiedName());
+							addGraphNode(utils.getBinaryName(imported), imported, null);
 
 						}
 					}
 					if (filtered) {
 						builder.endControlFlow();
 					}
+					add(registrations, builder);
 				}
 			}
 		}
@@ -315,8 +648,21 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 	private void addNewBeanForConfig(MethodSpec.Builder builder, TypeElement type) {
 		ExecutableElement constructor = getConstructor(type);
 		Parameters params = autowireParamsForMethod(constructor);
-		builder.addStatement("context.registerBean($T.class, () -> new $T(" + params.format + "))",
-				ArrayUtils.merge(type, type, params.args));
+		builder.addStatement("context.registerBean($T.class, $L)", type,
+				supplier(CodeBlock.of("new $T(" + params.format + ")", ArrayUtils.merge(type, params.args)), false));
+		addGraphNode(utils.getBinaryName(type), type, params.dependencies);
+	}
+
+	/**
+	 * Record a bean in the graph. Its name is the one that the context gives it when it
+	 * is registered (the class name, unless it is a bean method).
+	 * @param dependencies the dependencies of the bean, or null if they are unknown
+	 */
+	private void addGraphNode(String name, TypeElement type, List<String> dependencies) {
+		this.graph.put(name, utils.getBinaryName(type));
+		if (dependencies != null) {
+			this.graph.put(name + "#dependencies", String.join(",", dependencies));
+		}
 	}
 
 	private boolean createBeanMethod(MethodSpec.Builder builder, ExecutableElement beanMethod, TypeElement type,
@@ -326,13 +672,21 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 			TypeMirror returnType = utils.getReturnType(beanMethod);
 
 			Element returnTypeElement = utils.asElement(returnType);
-			boolean conditional = utils.hasAnnotation(beanMethod, SpringClassNames.CONDITIONAL.toString());
+			boolean conditional = conditions.isConditional(beanMethod);
 			if (conditional) {
 				if (!conditionsAvailable) {
 					builder.addStatement("$T conditions = context.getBeanFactory().getBean($T.class)",
 							SpringClassNames.CONDITION_SERVICE, SpringClassNames.CONDITION_SERVICE);
 				}
 			}
+			String enabled = this.enabledMethods.get(beanMethod);
+			if (enabled != null) {
+				builder.beginControlFlow("if ($T.$L)", this.className, enabled);
+			}
+			CodeBlock properties = conditions.getPropertyCondition(beanMethod);
+			if (properties != null) {
+				builder.beginControlFlow("if ($L)", properties);
+			}
 
 			if (returnTypeElement.getModifiers().contains(Modifier.PRIVATE)) {
 
@@ -345,6 +699,8 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 						+ beanMethod.getEnclosingElement() + "." + beanMethod);
 				builder.addStatement("context.registerBean($T.resolveClassName(\"$L\", context.getClassLoader()))",
 						SpringClassNames.CLASS_UTILS, ((TypeElement) returnTypeElement).getQualifiedName());
+				addGraphNode(utils.getBinaryName((TypeElement) returnTypeElement), (TypeElement) returnTypeElement,
+						null);
 
 			}
 			else {
@@ -354,15 +710,32 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 							utils.erasure(returnType));
 				}
 				Parameters params = autowireParamsForMethod(beanMethod);
-
-				builder.addStatement("context.registerBean(" + "\"" + beanMethod.getSimpleName() + "\", $T.class, "
-						+ supplier(type, beanMethod, params.format) + customizer(type, beanMethod, params) + ")",
-						ArrayUtils.merge(utils.erasure(returnType), type, params.args));
+				CodeBlock supplier = supplier(type, beanMethod, params);
+				Parameters custom = new Parameters();
+				custom.args = new Object[0];
+				String customizer = customizer(type, beanMethod, custom);
+
+				builder.addStatement("context.registerBean($S, $T.class, $L" + customizer + ")",
+						ArrayUtils.merge(beanMethod.getSimpleName().toString(), utils.erasure(returnType),
+								ArrayUtils.merge(supplier, custom.args)));
+				List<String> dependencies = new ArrayList<>();
+				if (!beanMethod.getModifiers().contains(Modifier.STATIC)) {
+					// The configuration bean has to exist before the bean method is called
+					dependencies.add(dependency("bean", type.asType(), null));
+				}
+				dependencies.addAll(params.dependencies);
+				addGraphNode(beanMethod.getSimpleName().toString(), (TypeElement) returnTypeElement, dependencies);
 			}
 
 			if (conditional) {
 				builder.endControlFlow();
 			}
+			if (properties != null) {
+				builder.endControlFlow();
+			}
+			if (enabled != null) {
+				builder.endControlFlow();
+			}
 
 			return conditional;
 		}
@@ -374,43 +747,64 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 	}
 
 	private String customizer(TypeElement type, ExecutableElement beanMethod, Parameters params) {
-		StringBuilder builder = new StringBuilder(", ");
-		boolean hasInit = false;
-		StringBuilder body = new StringBuilder();
+		List<String> statements = new ArrayList<>();
 		if (utils.hasAnnotation(beanMethod, SpringClassNames.BEAN.toString())) {
 			String methodName = utils.getStringFromAnnotation(beanMethod, SpringClassNames.BEAN.toString(),
 					"initMethod");
 			if (methodName != null && methodName.length() > 0) {
-				body.append("def.setInitMethodName(\"" + methodName + "\")");
+				statements.add("def.setInitMethodName(\"" + methodName + "\")");
 			}
 			methodName = utils.getStringFromAnnotation(beanMethod, SpringClassNames.BEAN.toString(), "destroyMethod");
 			if (methodName != null && methodName.length() > 0) {
-				hasInit = body.length() > 0;
-				if (hasInit && body.indexOf("{") != 0) {
-					body.insert(0, "{");
-					body.append("; ");
-				}
-				body.append("def.setDestroyMethodName(\"" + methodName + "\")");
+				statements.add("def.setDestroyMethodName(\"" + methodName + "\")");
 			}
 		}
+		TypeElement returnType = (TypeElement) utils.asElement(beanMethod.getReturnType());
 		if (utils.hasAnnotation(beanMethod, SpringClassNames.CONFIGURATION_PROPERTIES.toString())
-				|| utils.implementsInterface((TypeElement) utils.asElement(beanMethod.getReturnType()),
-						SpringClassNames.FACTORY_BEAN)) {
+				|| utils.implementsInterface(returnType, SpringClassNames.FACTORY_BEAN)) {
 			String methodName = beanMethod.getSimpleName().toString();
 			// The bean name for the @Configuration class is the class name
-			String factoryName = "$T.class.getName()";
 			params.addArg(type);
-			body.append("{ def.setFactoryMethodName(\"" + methodName + "\"); ");
-			body.append("def.setFactoryBeanName(" + factoryName + ")");
-			hasInit = true;
+			statements.add("def.setFactoryMethodName(\"" + methodName + "\")");
+			statements.add("def.setFactoryBeanName($T.class.getName())");
+		}
+		// An explicit @Lazy (on the method or the configuration class) wins
+		Boolean lazy = utils.getLazyInit(beanMethod);
+		if (lazy == null) {
+			lazy = utils.getLazyInit(type);
+		}
+		if (lazy != null) {
+			statements.add("def.setLazyInit(" + lazy + ")");
+		}
+		else if (isEager(returnType)) {
+			statements.add("def.setLazyInit(false)");
+		}
+		if (statements.isEmpty()) {
+			return "";
+		}
+		if (statements.size() == 1) {
+			return ", def -> " + statements.get(0);
+		}
+		return ", def -> { " + String.join("; ", statements) + "; }";
+	}
+
+	private static final String EAGER = ", def -> def.setLazyInit(false)";
+
+	private String lazyInit(TypeElement type) {
+		Boolean lazy = utils.getLazyInit(type);
+		if (lazy != null) {
+			return ", def -> def.setLazyInit(" + lazy + ")";
 		}
-		if (body.length() > 0) {
-			if (hasInit) {
-				body.append(";}");
+		return isEager(type) ? EAGER : "";
+	}
+
+	private boolean isEager(TypeElement type) {
+		for (ClassName eager : EAGER_TYPES) {
+			if (utils.implementsInterface(type, eager)) {
+				return true;
 			}
-			builder.append("def -> ").append(body.toString());
 		}
-		return builder.length() > 2 ? builder.toString() : "";
+		return false;
 	}
 
 	private Parameters autowireParamsForMethod(ExecutableElement method) {
@@ -423,22 +817,127 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 		Parameters params = new Parameters();
 		params.format = format;
 		params.args = args;
+		params.dependencies = parameterTypes.stream().map(param -> param.dependency).filter(Objects::nonNull)
+				.collect(Collectors.toList());
 		return params;
 	}
 
-	private String supplier(TypeElement owner, ExecutableElement beanMethod, String parameterVariables) {
+	/**
+	 * A dependency in the bean graph, e.g. <code>bean:com.example.Foo</code>. Arrays and
+	 * wildcards are replaced by their component type and <code>Object</code>.
+	 */
+	private String dependency(String kind, TypeMirror type, String qualifier) {
+		if (type.getKind() == TypeKind.ARRAY) {
+			type = ((ArrayType) type).getComponentType();
+		}
+		String name;
+		Element element = type.getKind() == TypeKind.DECLARED ? utils.asElement(utils.erasure(type)) : null;
+		if (element instanceof TypeElement) {
+			name = utils.getBinaryName((TypeElement) element);
+		}
+		else if (type.getKind() == TypeKind.WILDCARD || type.getKind() == TypeKind.TYPEVAR) {
+			name = Object.class.getName();
+		}
+		else {
+			name = type.toString();
+		}
+		return kind + ":" + name + (qualifier != null ? ":" + escape(qualifier) : "");
+	}
+
+	/**
+	 * Percent-encode the characters that separate the dependencies and their parts.
+	 */
+	private static String escape(String qualifier) {
+		return qualifier.replace("%", "%25").replace(",", "%2C").replace(":", "%3A");
+	}
+
+	private CodeBlock supplier(TypeElement owner, ExecutableElement beanMethod, Parameters params) {
 		boolean exception = utils.throwsCheckedException(beanMethod);
-		String code;
+		CodeBlock code;
 		if (!beanMethod.getModifiers().contains(Modifier.STATIC)) {
-			code = "context.getBean($T.class)." + beanMethod.getSimpleName() + "(" + parameterVariables + ")";
+			code = CodeBlock.of("config.get()." + beanMethod.getSimpleName() + "(" + params.format + ")",
+					params.args);
 		}
 		else {
-			code = "$T." + beanMethod.getSimpleName() + "(" + parameterVariables + ")";
+			code = CodeBlock.of("$T." + beanMethod.getSimpleName() + "(" + params.format + ")",
+					ArrayUtils.merge(owner, params.args));
+		}
+		return supplier(code, exception);
+	}
+
+	private CodeBlock supplier(CodeBlock code, boolean exception) {
+		if (this.dispatch) {
+			this.suppliers.add(exception ? CodeBlock.of(
+					"try { return (T) $L; } catch (Exception e) { throw new IllegalStateException(e); }", code)
+					: CodeBlock.of("return (T) $L;", code));
+			return CodeBlock.of(this.holder != null ? "new $T<>(context, config, $L)" : "new $T<>(context, $L)",
+					getSupplierName(), this.suppliers.size() - 1);
 		}
 		if (exception) {
-			return "() -> { try { return " + code + "; } catch (Exception e) { throw new IllegalStateException(e); } }";
+			return CodeBlock.of("() -> { try { return $L; } catch (Exception e) { throw new IllegalStateException(e); } }",
+					code);
 		}
-		return "() -> " + code;
+		return CodeBlock.of("() -> $L", code);
+	}
+
+	private ClassName getSupplierName() {
+		return this.className.nestedClass("BeanSupplier");
+	}
+
+	/**
+	 * A <code>Supplier</code> for all the beans in this initializer, with a
+	 * <code>switch</code> on the bean index (split into chunks if there are a lot of
+	 * beans, for the same reason as {@link #addRegistrations}).
+	 */
+	private TypeSpec createSupplier() {
+		TypeVariableName type = TypeVariableName.get("T");
+		TypeSpec.Builder builder = TypeSpec.classBuilder(getSupplierName());
+		builder.addModifiers(Modifier.PRIVATE, Modifier.STATIC);
+		builder.addTypeVariable(type);
+		builder.addSuperinterface(ParameterizedTypeName.get(ClassName.get(Supplier.class), type));
+		builder.addField(SpringClassNames.GENERIC_APPLICATION_CONTEXT, "context", Modifier.PRIVATE, Modifier.FINAL);
+		MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+				.addParameter(SpringClassNames.GENERIC_APPLICATION_CONTEXT, "context")
+				.addStatement("this.context = context");
+		if (this.holder != null) {
+			builder.addField(this.holder, "config", Modifier.PRIVATE, Modifier.FINAL);
+			constructor.addParameter(this.holder, "config").addStatement("this.config = config");
+		}
+		builder.addField(TypeName.INT, "index", Modifier.PRIVATE, Modifier.FINAL);
+		builder.addMethod(constructor.addParameter(TypeName.INT, "index").addStatement("this.index = index").build());
+		MethodSpec.Builder get = MethodSpec.methodBuilder("get").addAnnotation(Override.class)
+				.addModifiers(Modifier.PUBLIC).returns(type);
+		if (this.suppliers.size() <= MAX_SUPPLIERS_PER_METHOD) {
+			addSupplierCases(get, 0, this.suppliers.size());
+		}
+		else {
+			get.beginControlFlow("switch (this.index / $L)", MAX_SUPPLIERS_PER_METHOD);
+			for (int i = 0; i * MAX_SUPPLIERS_PER_METHOD < this.suppliers.size(); i++) {
+				get.addStatement("case $L: return get$L()", i, i);
+				MethodSpec.Builder chunk = MethodSpec.methodBuilder("get" + i).addModifiers(Modifier.PRIVATE)
+						.returns(type);
+				addSupplierCases(chunk, i * MAX_SUPPLIERS_PER_METHOD,
+						Math.min((i + 1) * MAX_SUPPLIERS_PER_METHOD, this.suppliers.size()));
+				builder.addMethod(chunk.build());
+			}
+			get.addStatement("default: throw new $T(\"No bean with index \" + this.index)",
+					IllegalStateException.class);
+			get.endControlFlow();
+		}
+		builder.addMethod(get.build());
+		return builder.build();
+	}
+
+	private void addSupplierCases(MethodSpec.Builder builder, int start, int end) {
+		builder.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked")
+				.build());
+		builder.beginControlFlow("switch (this.index)");
+		for (int i = start; i < end; i++) {
+			builder.addCode("case $L:\n$>$L\n$<", i, this.suppliers.get(i));
+		}
+		builder.addStatement("default: throw new $T(\"No bean with index \" + this.index)",
+				IllegalStateException.class);
+		builder.endControlFlow();
 	}
 
 	private Parameter parameterAccessor(VariableElement param) {
@@ -453,6 +952,7 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 				if (!args.isEmpty()) {
 					TypeMirror type = args.iterator().next();
 					TypeName value = TypeName.get(utils.erasure(type));
+					result.dependency = dependency("provider", type, null);
 					if (value.toString().equals(Map.class.getName())) {
 						result.format = "$T.map(context, $T.class)";
 						result.types.add(SpringClassNames.OBJECT_UTILS);
@@ -461,6 +961,7 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 						type = iterator.next();
 						value = TypeName.get(utils.erasure(type));
 						result.types.add(value);
+						result.dependency = dependency("provider", type, null);
 					}
 					else if (type instanceof DeclaredType && !((DeclaredType) type).getTypeArguments().isEmpty()) {
 						result.format = "context.getBeanProvider($T.forClassWithGenerics($T.class, "
@@ -520,6 +1021,7 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 				if (!args.isEmpty()) {
 					TypeMirror type = args.iterator().next();
 					TypeName value = TypeName.get(utils.erasure(type));
+					result.dependency = dependency("optional", type, null);
 					if (type instanceof DeclaredType && !((DeclaredType) type).getTypeArguments().isEmpty()) {
 						// The target type itself is generic. So far we only support one
 						// level of generic parameters. Further levels could be supported
@@ -550,6 +1052,7 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 			result.types.add(TypeName.get(utils.erasure(arrayType.getComponentType())));
 			result.types.add(TypeName.get(Collectors.class));
 			result.types.add(TypeName.get(utils.erasure(arrayType.getComponentType())));
+			result.dependency = dependency("collection", arrayType, null);
 
 		}
 		else if (paramType instanceof DeclaredType && (utils.implementsInterface(typeElement, ClassName.get(List.class))
@@ -560,6 +1063,7 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 			if (!args.isEmpty()) {
 				TypeMirror type = args.iterator().next();
 				TypeName value = TypeName.get(utils.erasure(type));
+				result.dependency = dependency("collection", type, null);
 				result.format = "context.getBeanProvider($T.class).stream().collect($T.toList())";
 				if (type instanceof DeclaredType && !((DeclaredType) type).getTypeArguments().isEmpty()) {
 					result.format = "$T.generic(context.getBeanProvider($T.forClassWithGenerics($T.class, $T.class)).stream().collect($T.toList()))";
@@ -595,6 +1099,7 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 				TypeName value = TypeName.get(utils.erasure(type));
 				result.format = "context.getBeansOfType($T.class)";
 				result.types.add(value);
+				result.dependency = dependency("collection", type, null);
 			}
 		}
 		else {
@@ -606,7 +1111,9 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 				result.types.add(TypeName.get(utils.erasure(param)));
 			}
 			if (qualifier != null) {
-				code.append("$T.qualifiedBeanOfType(context, $T.class, \"" + qualifier + "\")");
+				// A string literal, quoted for Java and then for the format of the code block
+				code.append("$T.qualifiedBeanOfType(context, $T.class, "
+						+ CodeBlock.of("$S", qualifier).toString().replace("$", "$$") + ")");
 				result.types.add(SpringClassNames.BEAN_FACTORY_ANNOTATION_UTILS);
 				result.types.add(TypeName.get(utils.erasure(param)));
 			}
@@ -618,6 +1125,7 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 				code.append(")");
 			}
 			result.format = code.toString();
+			result.dependency = dependency(utils.isLazy(param) ? "lazy" : "bean", utils.erasure(param), qualifier);
 		}
 		return result;
 	}
@@ -649,9 +1157,6 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 			}
 		}
 		// TODO: pick one that is explicitly autowired?
-		if (methods.isEmpty()) {
-			System.err.println("Wah: " + type);
-		}
 		return methods.get(0);
 	}
 
@@ -681,6 +1186,9 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 
 		private List<TypeName> types = new ArrayList<>();
 
+		// The bean that the parameter depends on (null if it isn't a bean)
+		private String dependency;
+
 	}
 
 	static class Parameters {
@@ -689,6 +1197,8 @@ public class InitializerSpec implements Comparable<InitializerSpec> {
 
 		private Object[] args;
 
+		private List<String> dependencies = new ArrayList<>();
+
 		public void addArg(Object arg) {
 			Object[] args = new Object[this.args.length + 1];
 			System.arraycopy(this.args, 0, args, 0, this.args.length);
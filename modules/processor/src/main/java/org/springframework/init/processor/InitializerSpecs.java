@@ -15,6 +15,7 @@
  */
 package org.springframework.init.processor;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -40,22 +41,52 @@ public class InitializerSpecs {
 
 	private Components components;
 
+	private boolean supplierDispatch;
+
+	private ImportSelectors selectors;
+
 	public InitializerSpecs(ElementUtils utils, Imports imports, Components components) {
 		this.utils = utils;
 		this.imports = imports;
 		this.components = components;
 	}
 
+	/**
+	 * Switch on supplier dispatch in all the initializers (see
+	 * {@link InitializerSpec#setSupplierDispatch(boolean)}).
+	 */
+	public void setSupplierDispatch(boolean supplierDispatch) {
+		this.supplierDispatch = supplierDispatch;
+	}
+
+	/**
+	 * Import selectors to run at build time in all the initializers (see
+	 * {@link InitializerSpec#setImportSelectors(ImportSelectors)}).
+	 */
+	public void setImportSelectors(ImportSelectors selectors) {
+		this.selectors = selectors;
+	}
+
 	public Set<InitializerSpec> getInitializers() {
 		return new LinkedHashSet<>(this.initializers.values());
 	}
 
+	/**
+	 * The initializers keyed by the type they were created for (usually the same as
+	 * their configuration type).
+	 */
+	public Map<TypeElement, InitializerSpec> getInitializersByType() {
+		return Collections.unmodifiableMap(this.initializers);
+	}
+
 	public void addInitializer(TypeElement initializer) {
 		if (initializers.containsKey(initializer)) {
 			return;
 		}
-		initializers.put(initializer,
-				new InitializerSpec(this.utils, initializer, imports, components));
+		InitializerSpec spec = new InitializerSpec(this.utils, initializer, imports, components);
+		spec.setSupplierDispatch(this.supplierDispatch);
+		spec.setImportSelectors(this.selectors);
+		initializers.put(initializer, spec);
 		findNestedInitializers(initializer, new HashSet<>());
 	}
 
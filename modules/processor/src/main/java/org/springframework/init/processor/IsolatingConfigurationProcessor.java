@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.processor;
+
+import java.io.IOException;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+
+/**
+ * Generates initializers for plain <code>@Configuration</code> classes that do not
+ * import or scan for anything, or extend another class (see
+ * {@link ElementUtils#isIsolated(TypeElement)}). Each initializer depends only on the
+ * source of its own top level type and the types that it refers to (which Gradle
+ * tracks as dependencies of that source), so this processor is registered with Gradle
+ * as "isolating". Everything else is left to the (aggregating)
+ * {@link SlimConfigurationProcessor}.
+ *
+ * @author Dave Syer
+ *
+ */
+@SupportedAnnotationTypes({ "org.springframework.context.annotation.Configuration" })
+@SupportedOptions({ SlimConfigurationProcessor.SUPPLIERS_OPTION })
+public class IsolatingConfigurationProcessor extends AbstractProcessor {
+
+	private Filer filer;
+
+	private Messager messager;
+
+	private ElementUtils utils;
+
+	private boolean supplierDispatch;
+
+	@Override
+	public synchronized void init(ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		this.filer = processingEnv.getFiler();
+		this.messager = processingEnv.getMessager();
+		this.utils = new ElementUtils(processingEnv.getTypeUtils(),
+				processingEnv.getElementUtils(), this.messager);
+		this.supplierDispatch = SlimConfigurationProcessor.isSupplierDispatch(processingEnv);
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations,
+			RoundEnvironment roundEnv) {
+		utils.reset();
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			if (type.getKind() == ElementKind.CLASS
+					&& !type.getModifiers().contains(Modifier.ABSTRACT)
+					&& utils.isIsolated(type)) {
+				process(type);
+			}
+		}
+		return false;
+	}
+
+	private void process(TypeElement type) {
+		// Fresh state for every type, so nothing leaks from one to another
+		Imports imports = new Imports(this.utils);
+		InitializerSpecs specs = new InitializerSpecs(this.utils, imports,
+				new Components(this.utils));
+		specs.setSupplierDispatch(this.supplierDispatch);
+		specs.addInitializer(type);
+		for (InitializerSpec initializer : specs.getInitializers()) {
+			messager.printMessage(Kind.NOTE,
+					"Writing Initializer " + initializer.getClassName(),
+					initializer.getConfigurationType());
+			write(initializer.getInitializer(), initializer.getPackage());
+			writeGraph(initializer);
+		}
+	}
+
+	private void writeGraph(InitializerSpec initializer) {
+		try {
+			initializer.writeBeanGraph(this.filer);
+		}
+		catch (IOException ex) {
+			messager.printMessage(Kind.NOTE, "Cannot write " + initializer.getBeanGraphLocation());
+		}
+	}
+
+	private void write(TypeSpec type, String packageName) {
+		JavaFile file = JavaFile.builder(packageName, type).build();
+		try {
+			file.writeTo(this.filer);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.init.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public abstract class PropertiesUtils {
+
+	/**
+	 * Write the values in <code>Properties</code> format (so keys and values are
+	 * escaped, and any character can be read back), but sorted and with no timestamp,
+	 * so the output is the same if nothing changes.
+	 */
+	public static void store(Map<String, String> values, OutputStream stream) throws IOException {
+		Properties properties = new Properties();
+		properties.putAll(values);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		properties.store(bytes, null);
+		List<String> lines = new ArrayList<>();
+		// Escaped, so one entry per line (and the first line is the timestamp)
+		for (String line : new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1).split("\\R")) {
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				lines.add(line);
+			}
+		}
+		Collections.sort(lines);
+		for (String line : lines) {
+			stream.write((line + "\n").getBytes(StandardCharsets.ISO_8859_1));
+		}
+	}
+
+}
@@ -4,9 +4,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -16,6 +18,7 @@ import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
@@ -30,12 +33,36 @@ import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.TypeSpec;
 
+/**
+ * Generates initializers for <code>@Configuration</code> classes that import or scan for
+ * other types, and keeps track of the imports across builds. This needs to see all the
+ * types in a compilation, so it is registered with Gradle as "aggregating". Plain
+ * configuration classes are handled by the {@link IsolatingConfigurationProcessor}.
+ *
+ * @author Dave Syer
+ *
+ */
 @SupportedAnnotationTypes({ "*" })
+@SupportedOptions({ SlimConfigurationProcessor.SUPPLIERS_OPTION, SlimConfigurationProcessor.SELECTORS_OPTION })
 public class SlimConfigurationProcessor extends AbstractProcessor {
 
+	/**
+	 * Processor option for the style of bean suppliers in the generated initializers:
+	 * "lambda" (the default) or "dispatch" (one class per initializer).
+	 */
+	public static final String SUPPLIERS_OPTION = "spring.init.suppliers";
+
+	/**
+	 * Processor option for a comma-separated list of <code>ImportSelector</code> class
+	 * names that can be run at build time (see {@link ImportSelectors}).
+	 */
+	public static final String SELECTORS_OPTION = "spring.init.selectors";
+
 	private final static String SLIM_STATE_PATH = "META-INF/"
 			+ "slim-configuration-processor.properties";
 
+	private final static String INDEX_PATH = "META-INF/spring-init.index";
+
 	private Filer filer;
 
 	private Messager messager;
@@ -50,6 +77,11 @@ public class SlimConfigurationProcessor extends AbstractProcessor {
 
 	private Components components;
 
+	private Fingerprints fingerprints;
+
+	// Configuration type (binary) name to initializer name
+	private Map<String, String> index = new TreeMap<>();
+
 	@Override
 	public synchronized void init(ProcessingEnvironment processingEnv) {
 		super.init(processingEnv);
@@ -59,8 +91,25 @@ public class SlimConfigurationProcessor extends AbstractProcessor {
 				processingEnv.getElementUtils(), this.messager);
 		this.imports = new Imports(this.utils);
 		this.components = new Components(this.utils);
+		this.fingerprints = new Fingerprints(this.utils, this.imports, this.components);
 		loadState();
+		loadIndex();
 		this.specs = new InitializerSpecs(this.utils, this.imports, this.components);
+		boolean dispatch = isSupplierDispatch(processingEnv);
+		this.specs.setSupplierDispatch(dispatch);
+		// Switching the option has to regenerate everything
+		this.fingerprints.addOption(SUPPLIERS_OPTION, String.valueOf(dispatch));
+		Set<String> selectors = ImportSelectors.parse(processingEnv.getOptions().get(SELECTORS_OPTION));
+		if (!selectors.isEmpty()) {
+			ImportSelectors importSelectors = new ImportSelectors(this.utils, selectors);
+			this.specs.setImportSelectors(importSelectors);
+			this.fingerprints.setImportSelectors(importSelectors);
+			this.fingerprints.addOption(SELECTORS_OPTION, String.join(",", selectors));
+		}
+	}
+
+	static boolean isSupplierDispatch(ProcessingEnvironment processingEnv) {
+		return "dispatch".equals(processingEnv.getOptions().get(SUPPLIERS_OPTION));
 	}
 
 	@Override
@@ -73,14 +122,22 @@ public class SlimConfigurationProcessor extends AbstractProcessor {
 			RoundEnvironment roundEnv) {
 		// messager.printMessage(Kind.NOTE, "processor instance running
 		// #"+Integer.toHexString(System.identityHashCode(this)));
+		utils.reset();
 		if (roundEnv.processingOver()) {
 			saveState();
+			saveIndex();
+			messager.printMessage(Kind.NOTE,
+					"Meta-annotation index saved " + utils.getIndexHits() + " lookups ("
+							+ utils.getResolvedTypes() + " annotation types resolved)");
+			messager.printMessage(Kind.NOTE, "Component scan index built " + components.getIndexBuilds()
+					+ " times for " + components.getAll().size() + " components");
 		}
 		else if (!processed) {
 			process(roundEnv);
 			processed = true;
 		}
-		return true;
+		// Don't claim anything: other processors (e.g. the isolating one) need to see it
+		return false;
 	}
 
 	private Set<TypeElement> collectTypes(RoundEnvironment roundEnv,
@@ -133,13 +190,45 @@ public class SlimConfigurationProcessor extends AbstractProcessor {
 				}
 			}
 		}
+		for (Map.Entry<TypeElement, InitializerSpec> entry : specs
+				.getInitializersByType().entrySet()) {
+			index.put(utils.getBinaryName(entry.getKey()),
+					entry.getValue().getClassName().reflectionName());
+		}
 		// Work out what these modules include
 		for (InitializerSpec initializer : specs.getInitializers()) {
+			if (utils.isIsolated(
+					utils.getTopLevelType(initializer.getConfigurationType()))) {
+				// Written by the IsolatingConfigurationProcessor, but the fingerprint
+				// still goes in the state, so it is complete if the type stops being
+				// isolated
+				fingerprints.record(initializer.getConfigurationType());
+				continue;
+			}
+			// Before the initializer is generated, which is most of the work
+			if (fingerprints.isUnchanged(initializer.getConfigurationType())
+					&& utils.asTypeElement(
+							initializer.getClassName().toString()) != null) {
+				messager.printMessage(Kind.NOTE,
+						"Skipping unchanged Initializer " + initializer.getClassName(),
+						initializer.getConfigurationType());
+				continue;
+			}
 			messager.printMessage(Kind.NOTE,
 					"Writing Initializer " + ClassName.get(initializer.getPackage(),
 							initializer.getInitializer().name),
 					initializer.getConfigurationType());
 			write(initializer.getInitializer(), initializer.getPackage());
+			writeGraph(initializer);
+		}
+	}
+
+	private void writeGraph(InitializerSpec initializer) {
+		try {
+			initializer.writeBeanGraph(this.filer);
+		}
+		catch (IOException ex) {
+			messager.printMessage(Kind.NOTE, "Cannot write " + initializer.getBeanGraphLocation());
 		}
 	}
 
@@ -163,8 +252,16 @@ public class SlimConfigurationProcessor extends AbstractProcessor {
 			}
 			messager.printMessage(Kind.NOTE,
 					"Loading imports information from previous build:" + properties);
+			int count = 0;
 			for (Map.Entry<Object, Object> property : properties.entrySet()) {
 				String annotationType = (String) property.getKey(); // registrarinitializer.XXXX.YYY.ZZZ
+				if (annotationType.startsWith("fingerprint.")) {
+					fingerprints.addPrevious(
+							annotationType.substring("fingerprint.".length()),
+							(String) property.getValue());
+					continue;
+				}
+				count++;
 				String k = annotationType.substring("import.".length());
 				TypeElement kte = utils.asTypeElement(k);
 				for (String v : ((String) property.getValue()).split(",")) {
@@ -183,7 +280,7 @@ public class SlimConfigurationProcessor extends AbstractProcessor {
 				}
 			}
 			messager.printMessage(Kind.NOTE,
-					"Loaded " + properties.size() + " import definitions");
+					"Loaded " + count + " import definitions");
 		}
 		catch (IOException e) {
 			messager.printMessage(Kind.NOTE,
@@ -191,6 +288,77 @@ public class SlimConfigurationProcessor extends AbstractProcessor {
 		}
 	}
 
+	public void loadIndex() {
+		Properties properties = new Properties();
+		try {
+			FileObject resource = filer.getResource(StandardLocation.CLASS_OUTPUT, "",
+					INDEX_PATH);
+			try (InputStream stream = resource.openInputStream();) {
+				properties.load(stream);
+			}
+		}
+		catch (IOException e) {
+			// normal on first full build
+			return;
+		}
+		for (String type : properties.stringPropertyNames()) {
+			// Only keep the ones that still exist (they might not be compiled this time)
+			// and recompute the ordering attributes
+			if (!type.contains("#")
+					&& utils.asTypeElement(type.replace("$", ".")) != null) {
+				index.put(type, properties.getProperty(type));
+			}
+		}
+	}
+
+	public void saveIndex() {
+		try {
+			FileObject resource = filer.createResource(StandardLocation.CLASS_OUTPUT, "",
+					INDEX_PATH);
+			Map<String, String> values = new TreeMap<>(index);
+			addOrdering(values);
+			try (OutputStream stream = resource.openOutputStream()) {
+				PropertiesUtils.store(values, stream);
+			}
+		}
+		catch (IOException e) {
+			messager.printMessage(Kind.NOTE, "Cannot write " + INDEX_PATH);
+		}
+	}
+
+	/**
+	 * Resolve the auto-configuration ordering once here, so that it doesn't have to be
+	 * computed from class metadata at runtime. Each type gets an ordinal (its position in
+	 * the sorted list) and the raw order and before/after constraints, so that types
+	 * from different indexes can still be merged.
+	 */
+	private void addOrdering(Map<String, String> values) {
+		AutoConfigurationSorter sorter = new AutoConfigurationSorter(utils);
+		List<String> sorted;
+		try {
+			sorted = sorter.sort(index.keySet());
+		}
+		catch (IllegalStateException e) {
+			messager.printMessage(Kind.WARNING,
+					"Cannot sort configurations in " + INDEX_PATH + ": " + e.getMessage());
+			return;
+		}
+		for (int i = 0; i < sorted.size(); i++) {
+			String type = sorted.get(i);
+			values.put(type + "#ordinal", String.valueOf(i));
+			int order = sorter.getOrder(type);
+			if (order != AutoConfigurationSorter.DEFAULT_ORDER) {
+				values.put(type + "#order", String.valueOf(order));
+			}
+			if (!sorter.getBefore(type).isEmpty()) {
+				values.put(type + "#before", String.join(",", sorter.getBefore(type)));
+			}
+			if (!sorter.getAfter(type).isEmpty()) {
+				values.put(type + "#after", String.join(",", sorter.getAfter(type)));
+			}
+		}
+	}
+
 	// TODO merge moduleSpecs state into just one overall annotation processor state,
 	// rather than multiple files
 	public void saveState() {
@@ -203,6 +371,10 @@ public class SlimConfigurationProcessor extends AbstractProcessor {
 							.map(value -> value.getQualifiedName().toString())
 							.collect(Collectors.joining(",")));
 		}
+		for (Map.Entry<String, String> entry : fingerprints.getFingerprints()
+				.entrySet()) {
+			properties.setProperty("fingerprint." + entry.getKey(), entry.getValue());
+		}
 		try {
 			FileObject resource = filer.createResource(StandardLocation.CLASS_OUTPUT, "",
 					SLIM_STATE_PATH);
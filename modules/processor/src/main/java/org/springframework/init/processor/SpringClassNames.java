@@ -66,12 +66,31 @@ public class SpringClassNames {
 
 	public static final ClassName OBJECT_UTILS = ClassName.get("org.springframework.init.func", "ObjectUtils");
 
+	public static final ClassName BEAN_HOLDER = ClassName.get("org.springframework.init.func", "BeanHolder");
+
+	public static final ClassName CLASS_PRESENCE = ClassName.get("org.springframework.init.func", "ClassPresence");
+
 	public static final ClassName CONDITION_SERVICE = ClassName.get("org.springframework.init.func",
 			"ConditionService");
 
 	public static final ClassName IMPORT_REGISTRARS = ClassName.get("org.springframework.init.func",
 			"ImportRegistrars");
 
+	public static final ClassName REGISTRATION_INDEX = ClassName.get("org.springframework.init.func",
+			"RegistrationIndex");
+
+	public static final ClassName CONDITION_METADATA_SOURCE = ClassName.get("org.springframework.init.func",
+			"ConditionMetadataSource");
+
+	public static final ClassName GENERATED_METADATA = ClassName.get("org.springframework.init.func",
+			"GeneratedMetadata");
+
+	public static final ClassName ANNOTATION_METADATA = ClassName.get("org.springframework.core.type",
+			"AnnotationMetadata");
+
+	public static final ClassName METHOD_METADATA = ClassName.get("org.springframework.core.type",
+			"MethodMetadata");
+
 	public static final ClassName APPLICATION_CONTEXT_INITIALIZER = ClassName.get("org.springframework.context",
 			"ApplicationContextInitializer");
 
@@ -108,6 +127,21 @@ public class SpringClassNames {
 	public static final ClassName CONDITIONAL_ON_CLASS = ClassName
 			.get("org.springframework.boot.autoconfigure.condition", "ConditionalOnClass");
 
+	public static final ClassName CONDITIONAL_ON_MISSING_CLASS = ClassName
+			.get("org.springframework.boot.autoconfigure.condition", "ConditionalOnMissingClass");
+
+	public static final ClassName CONDITIONAL_ON_PROPERTY = ClassName
+			.get("org.springframework.boot.autoconfigure.condition", "ConditionalOnProperty");
+
+	public static final ClassName AUTO_CONFIGURE_BEFORE = ClassName.get("org.springframework.boot.autoconfigure",
+			"AutoConfigureBefore");
+
+	public static final ClassName AUTO_CONFIGURE_AFTER = ClassName.get("org.springframework.boot.autoconfigure",
+			"AutoConfigureAfter");
+
+	public static final ClassName AUTO_CONFIGURE_ORDER = ClassName.get("org.springframework.boot.autoconfigure",
+			"AutoConfigureOrder");
+
 	public static final ClassName ENABLE_CONFIGURATION_PROPERTIES = ClassName
 			.get("org.springframework.boot.context.properties", "EnableConfigurationProperties");
 
@@ -23,6 +23,7 @@ import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -42,6 +43,11 @@ public class ProcessLauncherState {
 
 	private static final Logger log = LoggerFactory.getLogger(ProcessLauncherState.class);
 
+	/**
+	 * JVM argument that switches on the startup phase timings in Spring Init.
+	 */
+	public static final String PHASE_LOGGING = "-Dlogging.level.org.springframework.init.func.FunctionalInstallerListener.timings=debug";
+
 	private Process started;
 
 	private List<String> args = new ArrayList<>();
@@ -88,6 +94,8 @@ public class ProcessLauncherState {
 
 	private long heap;
 
+	private Map<String, Double> phases = new HashMap<>();
+
 	public int getClasses() {
 		return classes;
 	}
@@ -104,6 +112,14 @@ public class ProcessLauncherState {
 		return beans;
 	}
 
+	/**
+	 * The time in milliseconds spent in a startup phase, if the app reported it (see
+	 * {@link #PHASE_LOGGING}).
+	 */
+	public double getPhase(String phase) {
+		return phases.getOrDefault(phase, 0.);
+	}
+
 	public void setMainClass(String mainClass) {
 		this.mainClass = mainClass;
 	}
@@ -201,6 +217,7 @@ public class ProcessLauncherState {
 	public void run() throws Exception {
 		classes = 0;
 		beans = 0;
+		phases.clear();
 		List<String> jvmArgs = new ArrayList<>(this.args);
 		customize(jvmArgs);
 		started = exec(jvmArgs.toArray(new String[0]), this.progs.toArray(new String[0]));
@@ -280,6 +297,11 @@ public class ProcessLauncherState {
 			if (line.contains("Bean count: ")) {
 				beans += Integer.valueOf(line.substring(line.lastIndexOf("=") + 1));
 			}
+			if (line.contains("Phase time: ")) {
+				String phase = line.substring(line.indexOf("Phase time: ") + "Phase time: ".length(),
+						line.lastIndexOf("="));
+				phases.merge(phase, Double.valueOf(line.substring(line.lastIndexOf("=") + 1)), Double::sum);
+			}
 			line = null;
 		}
 		if (line != null) {
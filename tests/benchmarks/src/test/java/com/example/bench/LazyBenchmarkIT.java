@@ -61,7 +61,7 @@ public class LazyBenchmarkIT {
 
 		public MainState() {
 			super(TestsApplication.class, "target", "--server.port=0",
-					"--spring.main.sources=org.springframework.init.config.LazyInitBeanFactoryPostProcessor");
+					"--spring.functional.lazy-initialization=true");
 		}
 
 		@Override
@@ -81,6 +81,7 @@ public class SlimBenchmarkIT {
 
 		public SlimState(Class<?> mainClass) {
 			super(mainClass, "target", "--server.port=0");
+			addArgs(PHASE_LOGGING);
 		}
 
 		@Override
@@ -103,6 +104,14 @@ public class SlimBenchmarkIT {
 			return super.getHeap();
 		}
 
+		public double getProbe() {
+			return getPhase("probe");
+		}
+
+		public double getApply() {
+			return getPhase("apply");
+		}
+
 		@TearDown(Level.Invocation)
 		public void stop() throws Exception {
 			super.after();
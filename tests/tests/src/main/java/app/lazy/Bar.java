@@ -0,0 +1,10 @@
+package app.lazy;
+
+public class Bar {
+
+	@Override
+	public String toString() {
+		return "Bar";
+	}
+
+}
@@ -0,0 +1,10 @@
+package app.lazy;
+
+public class Foo {
+
+	@Override
+	public String toString() {
+		return "Foo";
+	}
+
+}
@@ -0,0 +1,40 @@
+package app.lazy;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+@Configuration(proxyBeanMethods = false)
+public class SampleConfiguration {
+
+	@Bean
+	public Foo foo() {
+		return new Foo();
+	}
+
+	@Bean
+	@Lazy(false)
+	public Bar bar() {
+		return new Bar();
+	}
+
+	@Bean
+	public Spam spam() {
+		return new Spam();
+	}
+
+	@Bean
+	public ApplicationListener<ContextRefreshedEvent> listener() {
+		return event -> {
+		};
+	}
+
+	@Bean
+	public static LazyInitializationExcludeFilter spamFilter() {
+		return LazyInitializationExcludeFilter.forBeanTypes(Spam.class);
+	}
+
+}
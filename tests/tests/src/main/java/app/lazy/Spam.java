@@ -0,0 +1,10 @@
+package app.lazy;
+
+public class Spam {
+
+	@Override
+	public String toString() {
+		return "Spam";
+	}
+
+}
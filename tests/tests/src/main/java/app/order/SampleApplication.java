@@ -11,6 +11,7 @@ import org.springframework.context.annotation.Import;
 
 import app.order.auto.AutoConfiguration;
 import app.order.auto.ManualConfiguration;
+import app.order.auto.MissingConfiguration;
 
 @SpringBootConfiguration
 @Import(SampleConfiguration.class)
@@ -42,6 +43,6 @@ public class SampleApplication {
 }
 
 @Configuration
-@ImportAutoConfiguration(AutoConfiguration.class)
+@ImportAutoConfiguration({ AutoConfiguration.class, MissingConfiguration.class })
 class SampleConfiguration {
 }
\ No newline at end of file
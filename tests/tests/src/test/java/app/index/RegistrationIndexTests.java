@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.index;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.init.func.RegistrationIndex;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class RegistrationIndexTests {
+
+	private GenericApplicationContext context = new GenericApplicationContext();
+
+	@Test
+	public void registerOnce() {
+		assertThat(RegistrationIndex.get(context).register(Base.class)).isTrue();
+		assertThat(RegistrationIndex.get(context).register(Base.class)).isFalse();
+	}
+
+	@Test
+	public void subclassRegistered() {
+		context.registerBeanDefinition("sub", new RootBeanDefinition(Sub.class));
+		assertThat(RegistrationIndex.get(context).isRegistered(Base.class)).isTrue();
+		assertThat(RegistrationIndex.get(context).register(Base.class)).isFalse();
+	}
+
+	@Test
+	public void removeAndRegisterAnother() {
+		context.registerBeanDefinition("base", new RootBeanDefinition(Base.class));
+		assertThat(RegistrationIndex.get(context).isRegistered(Base.class)).isTrue();
+		context.removeBeanDefinition("base");
+		context.registerBeanDefinition("other", new RootBeanDefinition(Other.class));
+		assertThat(RegistrationIndex.get(context).isRegistered(Base.class)).isFalse();
+		assertThat(RegistrationIndex.get(context).isRegistered(Other.class)).isTrue();
+		assertThat(RegistrationIndex.get(context).register(Base.class)).isTrue();
+	}
+
+	@Test
+	public void overrideWithAnotherClass() {
+		context.registerBeanDefinition("bean", new RootBeanDefinition(Sub.class));
+		assertThat(RegistrationIndex.get(context).isRegistered(Base.class)).isTrue();
+		context.registerBeanDefinition("bean", new RootBeanDefinition(Other.class));
+		assertThat(RegistrationIndex.get(context).isRegistered(Base.class)).isFalse();
+		assertThat(RegistrationIndex.get(context).isRegistered(Other.class)).isTrue();
+	}
+
+	@Test
+	public void removed() {
+		context.registerBeanDefinition("base", new RootBeanDefinition(Base.class));
+		assertThat(RegistrationIndex.get(context).isRegistered(Base.class)).isTrue();
+		context.removeBeanDefinition("base");
+		assertThat(RegistrationIndex.get(context).isRegistered(Base.class)).isFalse();
+	}
+
+	static class Base {
+
+	}
+
+	static class Sub extends Base {
+
+	}
+
+	static class Other {
+
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.order;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.init.func.ConditionOutcomeCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ConditionCacheTests {
+
+	@Test
+	public void reportFromCache() throws Exception {
+		File cache = File.createTempFile("conditions", ".bin");
+		cache.delete();
+		try {
+			Map<String, Boolean> evaluated = run(cache);
+			assertThat(cache.exists()).isTrue();
+			assertThat(evaluated).containsEntry("app.order.auto.AutoConfiguration#foo", false);
+			// Outcomes from the file are in the report as well
+			assertThat(run(cache)).isEqualTo(evaluated);
+		}
+		finally {
+			cache.delete();
+		}
+	}
+
+	private Map<String, Boolean> run(File cache) {
+		SpringApplication application = new SpringApplication(SampleApplication.class);
+		application.setLogStartupInfo(false);
+		try (ConfigurableApplicationContext context = application.run("--app.value=Hello",
+				"--spring.functional.condition-cache=" + cache.getAbsolutePath())) {
+			assertThat(context.getBean(Bar.class).getFoo().getValue()).isEqualTo("Manual");
+			// Property reads are only tracked while conditions are evaluated
+			assertThat(context.getEnvironment().getPropertySources().contains(ConditionOutcomeCache.class.getName()))
+					.isFalse();
+			Map<String, Boolean> outcomes = new TreeMap<>();
+			ConditionEvaluationReport.get(context.getBeanFactory()).getConditionAndOutcomesBySource()
+					.forEach((source, value) -> outcomes.put(source, value.isFullMatch()));
+			return outcomes;
+		}
+	}
+
+}
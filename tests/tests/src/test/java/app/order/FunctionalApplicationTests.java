@@ -20,12 +20,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 import app.order.auto.AutoConfiguration;
+import app.order.auto.MissingConfiguration;
 
 /**
  * @author Dave Syer
@@ -41,10 +44,20 @@ public class FunctionalApplicationTests {
 	@Autowired
 	private AutoConfiguration auto;
 
+	@Autowired
+	private ConfigurableApplicationContext context;
+
 	@Test
 	public void test() {
 		assertThat(auto).isNotNull();
 		assertThat(bar.getFoo().getValue()).isEqualTo("Manual");
 	}
 
+	@Test
+	public void compiledConditionInReport() {
+		assertThat(context.getBeanNamesForType(MissingConfiguration.class)).isEmpty();
+		assertThat(ConditionEvaluationReport.get(context.getBeanFactory()).getConditionAndOutcomesBySource()
+				.get(MissingConfiguration.class.getName()).isFullMatch()).isFalse();
+	}
+
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.order;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import app.order.auto.MissingConfiguration;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ParallelConditionsTests {
+
+	@Test
+	public void sameAsSerial() {
+		Result parallel = run("--spring.functional.parallel-conditions=true",
+				"--spring.functional.parallel-conditions-threads=4");
+		Result serial = run();
+		assertThat(parallel.names).isEqualTo(serial.names);
+		assertThat(parallel.outcomes).isEqualTo(serial.outcomes);
+		assertThat(parallel.outcomes).containsEntry(MissingConfiguration.class.getName(), false);
+	}
+
+	@Test
+	public void serialFallback() {
+		Result single = run("--spring.functional.parallel-conditions=true",
+				"--spring.functional.parallel-conditions-threads=1");
+		Result serial = run();
+		assertThat(single.names).isEqualTo(serial.names);
+		assertThat(single.outcomes).isEqualTo(serial.outcomes);
+	}
+
+	private Result run(String... args) {
+		SpringApplication application = new SpringApplication(SampleApplication.class);
+		application.setLogStartupInfo(false);
+		String[] all = Arrays.copyOf(args, args.length + 1);
+		all[args.length] = "--app.value=Hello";
+		try (ConfigurableApplicationContext context = application.run(all)) {
+			assertThat(context.getBean(Bar.class).getFoo().getValue()).isEqualTo("Manual");
+			Map<String, Boolean> outcomes = new TreeMap<>();
+			ConditionEvaluationReport.get(context.getBeanFactory()).getConditionAndOutcomesBySource()
+					.forEach((source, value) -> outcomes.put(source, value.isFullMatch()));
+			return new Result(Arrays.asList(context.getBeanDefinitionNames()), outcomes);
+		}
+	}
+
+	private static class Result {
+
+		private final List<String> names;
+
+		private final Map<String, Boolean> outcomes;
+
+		Result(List<String> names, Map<String, Boolean> outcomes) {
+			this.names = names;
+			this.outcomes = outcomes;
+		}
+
+	}
+
+}
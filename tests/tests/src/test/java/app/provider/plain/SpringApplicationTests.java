@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app.provider.plain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class SpringApplicationTests {
+
+	@Test
+	public void concurrentRuns() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<ConfigurableApplicationContext>> runs = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				runs.add(executor.submit(() -> run(new SpringApplication(SampleApplication.class))));
+			}
+			for (Future<ConfigurableApplicationContext> run : runs) {
+				try (ConfigurableApplicationContext context = run.get()) {
+					assertThat(context.getBeanNamesForType(Bar.class)).containsExactly("bar");
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void webApplicationTypeNone() {
+		SpringApplication application = new SpringApplication(SampleApplication.class);
+		// Spring Boot swaps the environment when the property changes the type
+		application.setWebApplicationType(WebApplicationType.REACTIVE);
+		try (ConfigurableApplicationContext context = run(application,
+				"--spring.main.web-application-type=none")) {
+			assertThat(context.getBeanNamesForType(Bar.class)).containsExactly("bar");
+		}
+	}
+
+	private ConfigurableApplicationContext run(SpringApplication application, String... args) {
+		application.setLogStartupInfo(false);
+		return application.run(args);
+	}
+
+}